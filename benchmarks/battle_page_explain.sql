@@ -0,0 +1,107 @@
+-- Plans of the player battle queries before and after the player id normalization
+-- (migrations/001_normalize_player_ids.sql) against generated data.
+-- Run with psql against a scratch database loaded with init.sql:
+--   psql -d ewgf-scratch -f benchmarks/battle_page_explain.sql
+-- Everything runs in one transaction that is rolled back, so the schema is left as init.sql made it.
+-- 2M battles between 50k players; player 000000000000000001 is in ~1% of them (~20k battles,
+-- on both sides) and has a few battles against itself. A third of all ids are stored without their
+-- zero padding, as ingest used to write them for some replays.
+
+BEGIN;
+
+-- the schema before the migration: no normalized form enforced, single column player id indexes
+ALTER TABLE battles
+    DROP CONSTRAINT battles_player1_id_normalized,
+    DROP CONSTRAINT battles_player2_id_normalized;
+DROP INDEX idx_player1_id_battle_at, idx_player2_id_battle_at;
+CREATE INDEX idx_player1_id ON battles USING btree (player1_id);
+CREATE INDEX idx_player2_id ON battles USING btree (player2_id);
+
+TRUNCATE battles;
+
+INSERT INTO battles (battle_id, date, battle_at, battle_type, game_version,
+                     player1_id, player2_id, player1_character_id, player2_character_id,
+                     player1_tekken_power, player1_dan_rank, player1_rounds_won,
+                     player2_tekken_power, player2_dan_rank, player2_rounds_won,
+                     stageid, winner)
+SELECT 'b' || i, '', 1700000000 + i / 3, 2, 10901,
+       CASE WHEN i % 3 = 0 THEN player1::text ELSE lpad(player1::text, 18, '0') END,
+       CASE WHEN i % 3 = 1 THEN player2::text ELSE lpad(player2::text, 18, '0') END,
+       i % 40, (i / 40) % 40, 0, 20, 3, 0, 20, 1, 0, 1 + i % 2
+FROM generate_series(1::bigint, 2000000) AS i,
+     LATERAL (SELECT CASE WHEN i % 200 = 0 THEN 1 ELSE 2 + (i * 7919) % 50000 END AS player1,
+                     CASE WHEN i % 200 = 100 THEN 1 ELSE 2 + (i * 104729) % 50000 END AS player2) players;
+
+-- self-play battles of the heavy player
+UPDATE battles SET player2_id = player1_id
+WHERE ltrim(player1_id, '0') = '1' AND battle_at % 50 = 0;
+
+ANALYZE battles;
+
+-- BEFORE: the baseline findAllBattlesByPlayer, every spelling on both sides OR-ed together.
+-- At best a BitmapOr over six index probes, then every matching row is fetched and sorted
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM battles WHERE
+    (player1_id = '000000000000000001' OR player1_id = LPAD('000000000000000001', 18, '0')
+        OR player1_id = LTRIM('000000000000000001', '0')) OR
+    (player2_id = '000000000000000001' OR player2_id = LPAD('000000000000000001', 18, '0')
+        OR player2_id = LTRIM('000000000000000001', '0'))
+ORDER BY battles.battle_at DESC;
+
+-- the migration: pad every id, enforce the form and swap in the composite indexes
+UPDATE battles
+SET player1_id = CASE WHEN length(player1_id) < 18 THEN LPAD(player1_id, 18, '0') ELSE player1_id END,
+    player2_id = CASE WHEN length(player2_id) < 18 THEN LPAD(player2_id, 18, '0') ELSE player2_id END
+WHERE length(player1_id) < 18 OR length(player2_id) < 18;
+
+ALTER TABLE battles
+    ADD CONSTRAINT battles_player1_id_normalized CHECK (length(player1_id) >= 18),
+    ADD CONSTRAINT battles_player2_id_normalized CHECK (length(player2_id) >= 18);
+DROP INDEX idx_player1_id, idx_player2_id;
+CREATE INDEX idx_player1_id_battle_at ON battles USING btree (player1_id, battle_at, battle_id);
+CREATE INDEX idx_player2_id_battle_at ON battles USING btree (player2_id, battle_at, battle_id);
+
+ANALYZE battles;
+
+-- AFTER: BattleRepository.findAllBattlesByPlayerId, one equality range scan per side
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM battles WHERE player1_id = '000000000000000001'
+UNION ALL
+SELECT * FROM battles WHERE player2_id = '000000000000000001' AND player1_id <> player2_id
+ORDER BY battle_at DESC;
+
+-- AFTER, first page (the profile): each side is a backward index scan stopped after LIMIT rows
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM (
+    (SELECT * FROM battles WHERE player1_id = '000000000000000001'
+        AND (battle_at, battle_id) < (9223372036854775807, '')
+        ORDER BY battle_at DESC, battle_id DESC LIMIT 51)
+    UNION ALL
+    (SELECT * FROM battles WHERE player2_id = '000000000000000001' AND player1_id <> player2_id
+        AND (battle_at, battle_id) < (9223372036854775807, '')
+        ORDER BY battle_at DESC, battle_id DESC LIMIT 51)
+) page ORDER BY battle_at DESC, battle_id DESC LIMIT 51;
+
+-- AFTER, a deep page: the cursor is an index condition, so the cost does not grow with the page number
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM (
+    (SELECT * FROM battles WHERE player1_id = '000000000000000001'
+        AND (battle_at, battle_id) < (1700100000, 'b300000')
+        ORDER BY battle_at DESC, battle_id DESC LIMIT 51)
+    UNION ALL
+    (SELECT * FROM battles WHERE player2_id = '000000000000000001' AND player1_id <> player2_id
+        AND (battle_at, battle_id) < (1700100000, 'b300000')
+        ORDER BY battle_at DESC, battle_id DESC LIMIT 51)
+) page ORDER BY battle_at DESC, battle_id DESC LIMIT 51;
+
+-- both queries return every battle of the player exactly once, self-play included
+SELECT (SELECT count(*) FROM battles
+        WHERE player1_id = '000000000000000001' OR player2_id = '000000000000000001') AS expected,
+       count(*) AS all_battles, count(DISTINCT battle_id) AS distinct_battles
+FROM (
+    SELECT battle_id FROM battles WHERE player1_id = '000000000000000001'
+    UNION ALL
+    SELECT battle_id FROM battles WHERE player2_id = '000000000000000001' AND player1_id <> player2_id
+) history;
+
+ROLLBACK;
@@ -0,0 +1,51 @@
+-- Plans of the player search (PlayerRepository.searchByNameOrPolarisId / searchByNamePrefix) against generated data.
+-- Run with psql against a scratch database loaded with init.sql (it truncates players and character_stats):
+--   psql -d ewgf-scratch -f benchmarks/player_search_explain.sql
+-- 1M players with 4-16 character names drawn from a small syllable set, so short substrings are common.
+
+TRUNCATE character_stats, players CASCADE;
+
+INSERT INTO players (player_id, polaris_id, name, region_id, latest_battle, tekken_power)
+SELECT lpad(i::text, 18, '0'),
+       upper(substr(md5(i::text), 1, 12)),
+       (SELECT string_agg((ARRAY['ka','zu','mi','ya','ro','jin','dev','il','hei','ha','chi','lee','xi','ao'])
+                          [1 + (abs(hashint4(i * 31 + n)) % 14)], '')
+        FROM generate_series(1, 2 + abs(hashint4(i)) % 5) AS n),
+       i % 6, 1700000000 + i, i
+FROM generate_series(1, 1000000) AS i;
+
+ANALYZE players;
+
+-- three characters or more: bitmap scans of both trigram indexes, then a top-N sort of the matches
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT player_id, name, polaris_id FROM players
+WHERE lower(name) LIKE '%' || 'jinka' || '%'
+   OR lower(polaris_id) LIKE '%' || REPLACE('jinka', '-', '') || '%'
+ORDER BY CASE WHEN lower(name) = 'jinka' THEN 0 WHEN lower(name) LIKE 'jinka' || '%' THEN 1 ELSE 20 END,
+         length(name)
+LIMIT 20;
+
+-- one or two characters, first step: a range scan of idx_players_name_prefix. A full page is the answer,
+-- since name prefix matches outrank every other substring match
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT player_id, name, polaris_id FROM players
+WHERE lower(name) LIKE 'ha' || '%'
+ORDER BY CASE WHEN lower(name) = 'ha' THEN 0 ELSE 1 END, length(name)
+LIMIT 20;
+
+-- one or two characters, fallback when the prefixes do not fill a page: the substring search,
+-- which cannot use the trigram indexes for a pattern this short
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT player_id, name, polaris_id FROM players
+WHERE lower(name) LIKE '%' || 'ez' || '%'
+   OR lower(polaris_id) LIKE '%' || REPLACE('ez', '-', '') || '%'
+ORDER BY CASE WHEN lower(name) = 'ez' THEN 0 WHEN lower(name) LIKE 'ez' || '%' THEN 1 ELSE 20 END,
+         length(name)
+LIMIT 20;
+
+-- same ranking either way: the best 20 of the substring search are all name prefix matches
+SELECT count(*) FILTER (WHERE lower(name) LIKE 'ha%') AS prefix_matches_in_top_20
+FROM (SELECT name FROM players
+      WHERE lower(name) LIKE '%ha%' OR lower(polaris_id) LIKE '%ha%'
+      ORDER BY CASE WHEN lower(name) = 'ha' THEN 0 WHEN lower(name) LIKE 'ha%' THEN 1 ELSE 20 END, length(name)
+      LIMIT 20) top;
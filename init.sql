@@ -11,6 +11,9 @@ SET xmloption = content;
 SET client_min_messages = warning;
 SET row_security = off;
 
+-- Extensions
+CREATE EXTENSION IF NOT EXISTS pg_trgm WITH SCHEMA public;
+
 -- Table Definitions
 CREATE TABLE public.aggregated_statistics (
     game_version integer NOT NULL,
@@ -25,6 +28,19 @@ CREATE TABLE public.aggregated_statistics (
     computed_at timestamp without time zone
 );
 
+-- Pending per-cell changes recorded at ingest, folded into aggregated_statistics by the statistics run
+CREATE TABLE public.aggregated_statistics_deltas (
+    game_version integer NOT NULL,
+    character_id character varying NOT NULL,
+    dan_rank integer NOT NULL,
+    category character varying NOT NULL,
+    region_id integer NOT NULL,
+    wins bigint NOT NULL,
+    losses bigint NOT NULL,
+    players bigint NOT NULL,
+    replays bigint NOT NULL
+);
+
 CREATE TABLE public.battles (
     battle_id character varying NOT NULL,
     date character varying NOT NULL,
@@ -69,6 +85,61 @@ CREATE TABLE public.character_stats (
    losses integer
 );
 
+-- Online revalidation: character_stats rebuilt from battles, and the increments ingest made meanwhile
+CREATE UNLOGGED TABLE public.character_stats_shadow (
+    player_id character varying NOT NULL,
+    character_id character varying NOT NULL,
+    game_version integer NOT NULL,
+    wins integer NOT NULL,
+    losses integer NOT NULL,
+    dan_rank integer NOT NULL,
+    latest_battle bigint NOT NULL,
+    changed boolean NOT NULL DEFAULT false
+);
+
+CREATE UNLOGGED TABLE public.character_stats_revalidation_log (
+    xid xid8 NOT NULL DEFAULT pg_current_xact_id(),
+    player_id character varying NOT NULL,
+    character_id character varying NOT NULL,
+    game_version integer NOT NULL,
+    wins integer NOT NULL,
+    losses integer NOT NULL
+);
+
+-- At most one row, present while an online revalidation captures ingest increments
+CREATE TABLE public.character_stats_revalidation_capture (
+    id boolean NOT NULL DEFAULT true,
+    started_at bigint NOT NULL,
+    CONSTRAINT character_stats_revalidation_capture_single_row CHECK (id)
+);
+
+-- Progress of long running maintenance jobs, so a restarted job resumes after last_key
+CREATE TABLE public.job_checkpoints (
+    job_name character varying NOT NULL,
+    last_key character varying,
+    processed bigint NOT NULL DEFAULT 0,
+    total bigint NOT NULL DEFAULT 0,
+    started_at bigint NOT NULL,
+    updated_at bigint NOT NULL,
+    completed_at bigint
+);
+
+-- Ranges of the parallel historical backfill, each walked backwards from upper_bound to lower_bound
+CREATE TABLE public.wavu_backfill_ranges (
+    range_id integer NOT NULL,
+    lower_bound bigint NOT NULL,
+    upper_bound bigint NOT NULL,
+    next_before bigint NOT NULL,
+    completed_at bigint
+);
+
+-- Ranked player sides applied by partitioned ingest, one claim per (battle, player)
+CREATE TABLE public.battle_player_claims (
+    battle_id character varying NOT NULL,
+    player_id character varying NOT NULL,
+    claimed_at bigint NOT NULL
+);
+
 CREATE TABLE public.past_player_names (
    id bigint NOT NULL,
    name character varying(255) NOT NULL,
@@ -84,6 +155,16 @@ CREATE SEQUENCE public.past_player_names_id_seq
 
 ALTER SEQUENCE public.past_player_names_id_seq OWNED BY public.past_player_names.id;
 
+-- Ranked results per player, character and opponent character, maintained at ingest
+CREATE TABLE public.player_matchups (
+    player_id character varying NOT NULL,
+    character_id character varying NOT NULL,
+    opponent_character_id character varying NOT NULL,
+    game_version integer NOT NULL,
+    wins integer NOT NULL DEFAULT 0,
+    losses integer NOT NULL DEFAULT 0
+);
+
 CREATE TABLE public.players (
     player_id character varying NOT NULL,
     polaris_id character varying,
@@ -91,7 +172,11 @@ CREATE TABLE public.players (
     region_id integer,
     language character varying,
     latest_battle bigint,
-    tekken_power bigint
+    tekken_power bigint,
+    main_character_id character varying,
+    main_dan_rank integer,
+    recent_character_id character varying,
+    recent_dan_rank integer
 );
 
 CREATE TABLE public.tekken_stats_summary (
@@ -111,15 +196,40 @@ ALTER TABLE ONLY public.aggregated_statistics
 ALTER TABLE ONLY public.battles
     ADD CONSTRAINT battles_pkey PRIMARY KEY (battle_id);
 
+-- player ids are stored zero padded to 18 characters, see migrations/001_normalize_player_ids.sql
+ALTER TABLE ONLY public.battles
+    ADD CONSTRAINT battles_player1_id_normalized CHECK (length(player1_id) >= 18);
+
+ALTER TABLE ONLY public.battles
+    ADD CONSTRAINT battles_player2_id_normalized CHECK (length(player2_id) >= 18);
+
+ALTER TABLE ONLY public.battle_player_claims
+    ADD CONSTRAINT battle_player_claims_pkey PRIMARY KEY (battle_id, player_id);
+
 ALTER TABLE ONLY public.character_stats
     ADD CONSTRAINT character_stats_pkey PRIMARY KEY (player_id, character_id, game_version);
 
+ALTER TABLE ONLY public.character_stats_shadow
+    ADD CONSTRAINT character_stats_shadow_pkey PRIMARY KEY (player_id, character_id, game_version);
+
+ALTER TABLE ONLY public.character_stats_revalidation_capture
+    ADD CONSTRAINT character_stats_revalidation_capture_pkey PRIMARY KEY (id);
+
+ALTER TABLE ONLY public.job_checkpoints
+    ADD CONSTRAINT job_checkpoints_pkey PRIMARY KEY (job_name);
+
+ALTER TABLE ONLY public.wavu_backfill_ranges
+    ADD CONSTRAINT wavu_backfill_ranges_pkey PRIMARY KEY (range_id);
+
 ALTER TABLE ONLY public.past_player_names
     ADD CONSTRAINT past_player_names_pkey PRIMARY KEY (id);
 
 ALTER TABLE ONLY public.past_player_names
     ADD CONSTRAINT past_player_names_player_id_name_key UNIQUE (player_id, name);
 
+ALTER TABLE ONLY public.player_matchups
+    ADD CONSTRAINT player_matchups_pkey PRIMARY KEY (player_id, character_id, opponent_character_id, game_version);
+
 ALTER TABLE ONLY public.players
     ADD CONSTRAINT players_pkey PRIMARY KEY (player_id);
 
@@ -128,10 +238,18 @@ ALTER TABLE ONLY public.tekken_stats_summary
 
 -- Indexes
 CREATE INDEX idx_battle_at ON public.battles USING btree (battle_at);
+CREATE INDEX idx_battle_player_claims_claimed_at ON public.battle_player_claims USING btree (claimed_at);
 CREATE INDEX idx_name ON public.players USING btree (name);
-CREATE INDEX idx_player1_id ON public.battles USING btree (player1_id);
-CREATE INDEX idx_player2_id ON public.battles USING btree (player2_id);
+-- (playerN_id, battle_at, battle_id) serve both id lookups and keyset pages of a player's battles
+CREATE INDEX idx_player1_id_battle_at ON public.battles USING btree (player1_id, battle_at, battle_id);
+CREATE INDEX idx_player2_id_battle_at ON public.battles USING btree (player2_id, battle_at, battle_id);
 CREATE INDEX idx_polaris_id ON public.players USING btree (polaris_id);
+CREATE INDEX idx_players_latest_battle ON public.players USING btree (latest_battle);
+-- player search: trigram indexes for substring matches, pattern ops for short prefix queries
+CREATE INDEX idx_players_name_trgm ON public.players USING gin (lower(name) public.gin_trgm_ops);
+CREATE INDEX idx_players_polaris_id_trgm ON public.players USING gin (lower(polaris_id) public.gin_trgm_ops);
+CREATE INDEX idx_players_name_prefix ON public.players USING btree (lower(name) text_pattern_ops);
+CREATE INDEX idx_players_polaris_id_prefix ON public.players USING btree (lower(polaris_id) text_pattern_ops);
 
 -- Foreign Keys
 ALTER TABLE ONLY public.character_stats
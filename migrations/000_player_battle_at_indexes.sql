@@ -0,0 +1,10 @@
+-- Composite (playerN_id, battle_at, battle_id) indexes for the keyset-paginated battle history.
+-- Run with psql outside of a transaction block (CREATE/DROP INDEX CONCURRENTLY), before deploying
+-- the battle page query; the new indexes are built before the single column ones are dropped,
+-- so player lookups always have an index.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_player1_id_battle_at ON public.battles USING btree (player1_id, battle_at, battle_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_player2_id_battle_at ON public.battles USING btree (player2_id, battle_at, battle_id);
+
+DROP INDEX CONCURRENTLY IF EXISTS public.idx_player1_id;
+DROP INDEX CONCURRENTLY IF EXISTS public.idx_player2_id;
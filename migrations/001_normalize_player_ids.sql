@@ -0,0 +1,41 @@
+-- One-time migration: store every battle player id in the 18 character, zero padded form
+-- that ingest writes, so player lookups are plain equality predicates on the player id indexes.
+-- Run with psql outside of a transaction block (CREATE INDEX CONCURRENTLY and COMMIT inside DO).
+
+-- Temporary partial index so each batch finds the remaining short ids without a full scan
+CREATE INDEX CONCURRENTLY IF NOT EXISTS tmp_battles_short_player_ids
+    ON public.battles (battle_id)
+    WHERE length(player1_id) < 18 OR length(player2_id) < 18;
+
+DO $$
+DECLARE
+    updated integer;
+BEGIN
+    LOOP
+        UPDATE public.battles
+        -- LPAD would truncate ids that are already longer than 18 characters
+        SET player1_id = CASE WHEN length(player1_id) < 18 THEN LPAD(player1_id, 18, '0') ELSE player1_id END,
+            player2_id = CASE WHEN length(player2_id) < 18 THEN LPAD(player2_id, 18, '0') ELSE player2_id END
+        WHERE battle_id IN (
+            SELECT battle_id FROM public.battles
+            WHERE length(player1_id) < 18 OR length(player2_id) < 18
+            LIMIT 10000
+        );
+        GET DIAGNOSTICS updated = ROW_COUNT;
+        EXIT WHEN updated = 0;
+        RAISE NOTICE 'Normalized % battles', updated;
+        COMMIT;
+    END LOOP;
+END $$;
+
+DROP INDEX CONCURRENTLY IF EXISTS public.tmp_battles_short_player_ids;
+
+-- Enforce the normalized form from now on
+ALTER TABLE public.battles
+    ADD CONSTRAINT battles_player1_id_normalized CHECK (length(player1_id) >= 18) NOT VALID;
+ALTER TABLE public.battles
+    ADD CONSTRAINT battles_player2_id_normalized CHECK (length(player2_id) >= 18) NOT VALID;
+ALTER TABLE public.battles VALIDATE CONSTRAINT battles_player1_id_normalized;
+ALTER TABLE public.battles VALIDATE CONSTRAINT battles_player2_id_normalized;
+
+ANALYZE public.battles;
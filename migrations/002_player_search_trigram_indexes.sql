@@ -0,0 +1,15 @@
+-- Indexes for the player search, see PlayerRepository.searchByNameOrPolarisId.
+-- Run with psql outside of a transaction block (CREATE INDEX CONCURRENTLY).
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm WITH SCHEMA public;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_players_name_trgm
+    ON public.players USING gin (lower(name) public.gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_players_polaris_id_trgm
+    ON public.players USING gin (lower(polaris_id) public.gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_players_name_prefix
+    ON public.players USING btree (lower(name) text_pattern_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_players_polaris_id_prefix
+    ON public.players USING btree (lower(polaris_id) text_pattern_ops);
+
+ANALYZE public.players;
@@ -0,0 +1,5 @@
+-- Serves the recently active players fallback query after a restart.
+-- Run with psql outside of a transaction block (CREATE INDEX CONCURRENTLY).
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_players_latest_battle
+    ON public.players USING btree (latest_battle);
@@ -0,0 +1,54 @@
+-- Adds the precomputed main and recent character columns to players and fills them from character_stats.
+-- Run with psql. The backfill commits every batch, so it can run while ingest is live and be restarted.
+
+ALTER TABLE public.players ADD COLUMN IF NOT EXISTS main_character_id character varying;
+ALTER TABLE public.players ADD COLUMN IF NOT EXISTS main_dan_rank integer;
+ALTER TABLE public.players ADD COLUMN IF NOT EXISTS recent_character_id character varying;
+ALTER TABLE public.players ADD COLUMN IF NOT EXISTS recent_dan_rank integer;
+
+DO $$
+DECLARE
+    last_player_id varchar := '';
+    batch_last_id varchar;
+BEGIN
+    LOOP
+        SELECT MAX(player_id) INTO batch_last_id FROM (
+            SELECT player_id FROM public.players
+            WHERE player_id > last_player_id
+            ORDER BY player_id
+            LIMIT 10000
+        ) batch;
+        EXIT WHEN batch_last_id IS NULL;
+
+        WITH per_character AS (
+            SELECT cs.player_id, cs.character_id,
+                   MAX(cs.dan_rank) AS max_dan_rank,
+                   SUM(COALESCE(cs.wins, 0) + COALESCE(cs.losses, 0)) AS matches
+            FROM public.character_stats cs
+            WHERE cs.player_id > last_player_id AND cs.player_id <= batch_last_id
+            GROUP BY cs.player_id, cs.character_id
+        ),
+        main AS (
+            SELECT DISTINCT ON (player_id) player_id, character_id, max_dan_rank
+            FROM per_character
+            ORDER BY player_id, max_dan_rank DESC, matches DESC
+        ),
+        recent AS (
+            SELECT DISTINCT ON (cs.player_id) cs.player_id, cs.character_id, cs.dan_rank
+            FROM public.character_stats cs
+            WHERE cs.player_id > last_player_id AND cs.player_id <= batch_last_id
+            ORDER BY cs.player_id, cs.latest_battle DESC NULLS LAST
+        )
+        UPDATE public.players p SET
+            main_character_id = main.character_id,
+            main_dan_rank = main.max_dan_rank,
+            recent_character_id = recent.character_id,
+            recent_dan_rank = recent.dan_rank
+        FROM main
+        JOIN recent ON recent.player_id = main.player_id
+        WHERE p.player_id = main.player_id;
+
+        last_player_id := batch_last_id;
+        COMMIT;
+    END LOOP;
+END $$;
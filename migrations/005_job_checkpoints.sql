@@ -0,0 +1,13 @@
+-- Checkpoints for resumable maintenance jobs (character stats revalidation).
+-- Run with psql.
+
+CREATE TABLE IF NOT EXISTS public.job_checkpoints (
+    job_name character varying NOT NULL,
+    last_key character varying,
+    processed bigint NOT NULL DEFAULT 0,
+    total bigint NOT NULL DEFAULT 0,
+    started_at bigint NOT NULL,
+    updated_at bigint NOT NULL,
+    completed_at bigint,
+    CONSTRAINT job_checkpoints_pkey PRIMARY KEY (job_name)
+);
@@ -0,0 +1,23 @@
+-- Tables of the online character stats revalidation (revalidation.mode=online).
+-- Run with psql. Both are unlogged scratch tables, truncated at the start and end of every run.
+
+CREATE UNLOGGED TABLE IF NOT EXISTS public.character_stats_shadow (
+    player_id character varying NOT NULL,
+    character_id character varying NOT NULL,
+    game_version integer NOT NULL,
+    wins integer NOT NULL,
+    losses integer NOT NULL,
+    dan_rank integer NOT NULL,
+    latest_battle bigint NOT NULL,
+    changed boolean NOT NULL DEFAULT false,
+    CONSTRAINT character_stats_shadow_pkey PRIMARY KEY (player_id, character_id, game_version)
+);
+
+CREATE UNLOGGED TABLE IF NOT EXISTS public.character_stats_revalidation_log (
+    xid xid8 NOT NULL DEFAULT pg_current_xact_id(),
+    player_id character varying NOT NULL,
+    character_id character varying NOT NULL,
+    game_version integer NOT NULL,
+    wins integer NOT NULL,
+    losses integer NOT NULL
+);
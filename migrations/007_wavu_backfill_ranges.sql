@@ -0,0 +1,11 @@
+-- Progress of the parallel historical backfill (wavu.backfill.mode=parallel).
+-- Run with psql.
+
+CREATE TABLE IF NOT EXISTS public.wavu_backfill_ranges (
+    range_id integer NOT NULL,
+    lower_bound bigint NOT NULL,
+    upper_bound bigint NOT NULL,
+    next_before bigint NOT NULL,
+    completed_at bigint,
+    CONSTRAINT wavu_backfill_ranges_pkey PRIMARY KEY (range_id)
+);
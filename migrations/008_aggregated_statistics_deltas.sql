@@ -0,0 +1,14 @@
+-- Pending aggregated_statistics changes recorded at ingest (statistics.incremental.enabled=true).
+-- Run with psql before enabling the flag, ingest writes to this table from its first batch on.
+
+CREATE TABLE IF NOT EXISTS public.aggregated_statistics_deltas (
+    game_version integer NOT NULL,
+    character_id character varying NOT NULL,
+    dan_rank integer NOT NULL,
+    category character varying NOT NULL,
+    region_id integer NOT NULL,
+    wins bigint NOT NULL,
+    losses bigint NOT NULL,
+    players bigint NOT NULL,
+    replays bigint NOT NULL
+);
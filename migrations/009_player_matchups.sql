@@ -0,0 +1,33 @@
+-- Ranked results per player, character and opponent character (player.matchups.enabled=true).
+-- Run with psql before enabling the flag. Ingest does not write to this table while the flag is off,
+-- so after enabling it call /admin/backfillPlayerMatchups to count the battles ingested since.
+
+CREATE TABLE IF NOT EXISTS public.player_matchups (
+    player_id character varying NOT NULL,
+    character_id character varying NOT NULL,
+    opponent_character_id character varying NOT NULL,
+    game_version integer NOT NULL,
+    wins integer NOT NULL DEFAULT 0,
+    losses integer NOT NULL DEFAULT 0,
+    CONSTRAINT player_matchups_pkey PRIMARY KEY (player_id, character_id, opponent_character_id, game_version)
+);
+
+-- Backfill from ranked battles (battle_type = 2), same statement as PlayerMatchupService.backfill()
+-- for every game version at once; re-running it recomputes the rows instead of adding to them
+INSERT INTO public.player_matchups
+    (player_id, character_id, opponent_character_id, game_version, wins, losses)
+SELECT player_id, character_id, opponent_character_id, game_version, SUM(win), SUM(loss) FROM (
+    SELECT player1_id AS player_id,
+        player1_character_id::varchar AS character_id, player2_character_id::varchar AS opponent_character_id,
+        game_version, (winner = 1)::int AS win, (winner <> 1)::int AS loss
+    FROM public.battles WHERE battle_type = 2
+    UNION ALL
+    SELECT player2_id,
+        player2_character_id::varchar, player1_character_id::varchar,
+        game_version, (winner = 2)::int, (winner <> 2)::int
+    FROM public.battles WHERE battle_type = 2
+) results
+GROUP BY player_id, character_id, opponent_character_id, game_version
+ON CONFLICT (player_id, character_id, opponent_character_id, game_version) DO UPDATE SET
+    wins = EXCLUDED.wins,
+    losses = EXCLUDED.losses;
@@ -0,0 +1,13 @@
+-- Player sides applied by partitioned ingest (ingestion.partitioning.enabled=true).
+-- Run with psql before enabling the flag. A partition consumer claims (battle_id, player_id) for each
+-- ranked side it owns before adding it to players/character_stats, so no side is counted twice.
+
+CREATE TABLE IF NOT EXISTS public.battle_player_claims (
+    battle_id character varying NOT NULL,
+    player_id character varying NOT NULL,
+    claimed_at bigint NOT NULL,
+    CONSTRAINT battle_player_claims_pkey PRIMARY KEY (battle_id, player_id)
+);
+
+-- the reconciliation job scans recent claims for battles with only one side applied, and prunes old ones
+CREATE INDEX IF NOT EXISTS idx_battle_player_claims_claimed_at ON public.battle_player_claims USING btree (claimed_at);
@@ -0,0 +1,11 @@
+-- Marker of a running online character stats revalidation (revalidation.mode=online).
+-- Run with psql before deploying. While the row exists, ingest on every instance logs its character_stats
+-- increments to character_stats_revalidation_log. A run inserts it and deletes it when done; a run that was
+-- killed leaves it behind, and ingest keeps logging until the next run truncates the log and finishes.
+
+CREATE TABLE IF NOT EXISTS public.character_stats_revalidation_capture (
+    id boolean NOT NULL DEFAULT true,
+    started_at bigint NOT NULL,
+    CONSTRAINT character_stats_revalidation_capture_pkey PRIMARY KEY (id),
+    CONSTRAINT character_stats_revalidation_capture_single_row CHECK (id)
+);
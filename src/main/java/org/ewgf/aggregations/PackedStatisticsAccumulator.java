@@ -0,0 +1,137 @@
+package org.ewgf.aggregations;
+
+/*
+ * Accumulates aggregated statistic cells without allocating a key object per row.
+ * (gameVersion, characterId, danRank, regionId, category) is packed into one long and
+ * looked up in an open-addressing table whose counters live in parallel int arrays.
+ *
+ * Key layout (57 bits): gameVersion 24 | characterId 16 | danRank 8 | regionId 8 | overall 1
+ */
+public class PackedStatisticsAccumulator {
+
+    private static final long EMPTY = -1L; // packed keys are never negative
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private int[] wins;
+    private int[] losses;
+    private int[] players;
+    private int[] replays;
+    private int size;
+
+    @FunctionalInterface
+    public interface CellConsumer {
+        void accept(int gameVersion, int characterId, int danRank, int regionId, boolean overall,
+                    int wins, int losses, int players, int replays);
+    }
+
+    public PackedStatisticsAccumulator(int expectedCells) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedCells / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    // Rows with a field outside its bits have no cell, callers skip them instead of calling packKey
+    public static boolean canPack(int gameVersion, int characterId, int danRank, int regionId) {
+        return fits(gameVersion, 24) && fits(characterId, 16) && fits(danRank, 8) && fits(regionId, 8);
+    }
+
+    public static long packKey(int gameVersion, int characterId, int danRank, int regionId, boolean overall) {
+        checkRange("gameVersion", gameVersion, 24);
+        checkRange("characterId", characterId, 16);
+        checkRange("danRank", danRank, 8);
+        checkRange("regionId", regionId, 8);
+        return ((long) gameVersion << 33)
+                | ((long) characterId << 17)
+                | ((long) danRank << 9)
+                | ((long) regionId << 1)
+                | (overall ? 1L : 0L);
+    }
+
+    // Adds one player's row to the cell
+    public void add(long key, int wins, int losses) {
+        int slot = findSlot(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            if (++size > keys.length * LOAD_FACTOR) {
+                resize();
+                slot = findSlot(key);
+            }
+        }
+        this.wins[slot] += wins;
+        this.losses[slot] += losses;
+        this.players[slot] += 1;
+        this.replays[slot] += wins + losses;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(CellConsumer consumer) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            long key = keys[slot];
+            if (key == EMPTY) continue;
+            consumer.accept(
+                    (int) (key >>> 33),
+                    (int) ((key >>> 17) & 0xFFFF),
+                    (int) ((key >>> 9) & 0xFF),
+                    (int) ((key >>> 1) & 0xFF),
+                    (key & 1L) == 1L,
+                    wins[slot], losses[slot], players[slot], replays[slot]);
+        }
+    }
+
+    private int findSlot(long key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldWins = wins, oldLosses = losses, oldPlayers = players, oldReplays = replays;
+        allocate(oldKeys.length << 1);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY) continue;
+            int slot = findSlot(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            wins[slot] = oldWins[i];
+            losses[slot] = oldLosses[i];
+            players[slot] = oldPlayers[i];
+            replays[slot] = oldReplays[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        java.util.Arrays.fill(keys, EMPTY);
+        wins = new int[capacity];
+        losses = new int[capacity];
+        players = new int[capacity];
+        replays = new int[capacity];
+    }
+
+    // murmur3 finalizer, spreads the packed fields over the low bits used for the slot
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private static boolean fits(int value, int bits) {
+        return value >= 0 && value < (1 << bits);
+    }
+
+    private static void checkRange(String field, int value, int bits) {
+        if (!fits(value, bits)) {
+            throw new IllegalArgumentException(field + " out of range for packed key: " + value);
+        }
+    }
+}
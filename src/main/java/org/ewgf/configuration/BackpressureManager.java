@@ -3,6 +3,7 @@ package org.ewgf.configuration;
 import lombok.Data;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.ewgf.services.BattlePartitionRouter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -15,6 +16,8 @@ import org.springframework.web.util.UriComponentsBuilder;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 @Component
@@ -47,10 +50,12 @@ public class BackpressureManager {
 
     private RestTemplate restTemplate = new RestTemplate();
 
+    private final BattlePartitionRouter battlePartitionRouter;
+
     @Scheduled(fixedRate = 10000) // Check every 5 seconds
     public void monitorQueueDepth() {
         try {
-            int messageCount = getQueueMessageCount();
+            int messageCount = getTotalMessageCount();
             if (messageCount > backpressureThreshold && !backpressureActive) {
                 logger.warn("BOTTLENECK DETECTED, ENABLING BACKPRESSURE");
                 activateBackpressure();
@@ -63,7 +68,27 @@ public class BackpressureManager {
         }
     }
 
-    private int getQueueMessageCount() throws URISyntaxException {
+    // With partitioning the shared queue stays empty, so the backlog is the sum over every battle queue
+    private int getTotalMessageCount() throws URISyntaxException {
+        int total = 0;
+        for (String monitoredQueueName : getMonitoredQueueNames()) {
+            total += getQueueMessageCount(monitoredQueueName);
+        }
+        return total;
+    }
+
+    private List<String> getMonitoredQueueNames() {
+        List<String> queueNames = new ArrayList<>();
+        queueNames.add(queueName);
+        if (battlePartitionRouter.isEnabled()) {
+            for (String label : battlePartitionRouter.getPartitionLabels()) {
+                queueNames.add(BattlePartitionRouter.queueName(queueName, label));
+            }
+        }
+        return queueNames;
+    }
+
+    private int getQueueMessageCount(String queueName) throws URISyntaxException {
         String url = UriComponentsBuilder.fromHttpUrl(rabbitMqApiUrl)
                     .pathSegment("queues", "%2F", queueName)
                     .build()
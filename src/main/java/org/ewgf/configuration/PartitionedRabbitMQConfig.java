@@ -0,0 +1,102 @@
+package org.ewgf.configuration;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.ewgf.services.BattlePartitionRouter;
+import org.ewgf.services.PartitionedRabbitService;
+import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.annotation.RabbitListenerConfigurer;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistrar;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/*
+ * One queue and exactly one consumer per player partition, see BattlePartitionRouter. Partition
+ * consumers never write the same player's rows, and the battle rows they can both insert are taken
+ * in battle_id order, so no lock cycle can form and there is nothing to retry.
+ */
+@Configuration
+@ConditionalOnProperty(name = "ingestion.partitioning.enabled", havingValue = "true")
+public class PartitionedRabbitMQConfig implements RabbitListenerConfigurer {
+
+    private final RabbitMQConfig rabbitMQConfig;
+    private final BattlePartitionRouter battlePartitionRouter;
+    private final PartitionedRabbitService partitionedRabbitService;
+    private final VirtualThreadConfig virtualThreadConfig;
+    private final ConnectionFactory connectionFactory;
+
+    public PartitionedRabbitMQConfig(
+            RabbitMQConfig rabbitMQConfig,
+            BattlePartitionRouter battlePartitionRouter,
+            PartitionedRabbitService partitionedRabbitService,
+            VirtualThreadConfig virtualThreadConfig,
+            ConnectionFactory connectionFactory) {
+        this.rabbitMQConfig = rabbitMQConfig;
+        this.battlePartitionRouter = battlePartitionRouter;
+        this.partitionedRabbitService = partitionedRabbitService;
+        this.virtualThreadConfig = virtualThreadConfig;
+        this.connectionFactory = connectionFactory;
+    }
+
+    @Bean
+    public Declarables partitionDeclarables(TopicExchange exchange) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (String label : battlePartitionRouter.getPartitionLabels()) {
+            Queue queue = new Queue(partitionQueueName(label), true);
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(exchange).with(BattlePartitionRouter.routingKey(label)));
+        }
+        return new Declarables(declarables);
+    }
+
+    @Override
+    public void configureRabbitListeners(RabbitListenerEndpointRegistrar registrar) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setConcurrentConsumers(1);
+        factory.setMaxConcurrentConsumers(1);
+        factory.setTaskExecutor(virtualThreadConfig.rabbitVirtualThreadExecutor());
+
+        for (String label : battlePartitionRouter.getPartitionLabels()) {
+            SimpleRabbitListenerEndpoint endpoint = new SimpleRabbitListenerEndpoint();
+            endpoint.setId("battle-partition-" + label);
+            endpoint.setQueueNames(partitionQueueName(label));
+            endpoint.setMessageListener(message -> partitionedRabbitService.receivePartitionMessage(label, message));
+            registrar.registerEndpoint(endpoint, factory);
+        }
+    }
+
+    // Lag is the number of messages waiting on each partition queue
+    @Bean
+    public MeterBinder partitionLagMetrics(RabbitAdmin rabbitAdmin) {
+        return registry -> {
+            for (String label : battlePartitionRouter.getPartitionLabels()) {
+                String queueName = partitionQueueName(label);
+                Gauge.builder("ewgf.ingestion.partition.lag", rabbitAdmin, admin -> queueDepth(admin, queueName))
+                        .tag("partition", label)
+                        .description("Messages waiting on the partition queue")
+                        .register(registry);
+            }
+        };
+    }
+
+    private double queueDepth(RabbitAdmin rabbitAdmin, String queueName) {
+        Properties properties = rabbitAdmin.getQueueProperties(queueName);
+        if (properties == null) return Double.NaN;
+        Object count = properties.get(RabbitAdmin.QUEUE_MESSAGE_COUNT);
+        return count instanceof Number number ? number.doubleValue() : Double.NaN;
+    }
+
+    private String partitionQueueName(String label) {
+        return BattlePartitionRouter.queueName(rabbitMQConfig.getQueueName(), label);
+    }
+}
@@ -51,6 +51,11 @@ public class RabbitMQConfig {
     @Bean
     public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(ConnectionFactory connectionFactory,
                                                                                MessageConverter messageConverter) {
+        return createContainerFactory(connectionFactory, messageConverter);
+    }
+
+    private SimpleRabbitListenerContainerFactory createContainerFactory(ConnectionFactory connectionFactory,
+                                                                        MessageConverter messageConverter) {
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
         factory.setConnectionFactory(connectionFactory);
         factory.setMessageConverter(messageConverter);
@@ -67,6 +72,27 @@ public class RabbitMQConfig {
         return factory;
     }
 
+    /*
+     * Consumer-side batching: the container hands the listener up to maxDeliveries messages at once,
+     * or fewer when no further message arrives within idleGapMillis of the previous one, and acks the
+     * whole batch after the listener returns. The gap restarts with every message, so it is not a
+     * bound on the total wait; a steady trickle fills the batch up to maxDeliveries.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory coalescingRabbitListenerContainerFactory(
+            ConnectionFactory connectionFactory,
+            MessageConverter messageConverter,
+            @Value("${ingestion.coalescing.max-deliveries:20}") int maxDeliveries,
+            @Value("${ingestion.coalescing.idle-gap-ms:500}") long idleGapMillis) {
+        SimpleRabbitListenerContainerFactory factory = createContainerFactory(connectionFactory, messageConverter);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(maxDeliveries);
+        factory.setPrefetchCount(maxDeliveries);
+        factory.setReceiveTimeout(idleGapMillis);
+        return factory;
+    }
+
     private RetryTemplate createRetryTemplate()
     {
         RetryTemplate retryTemplate = new RetryTemplate();
@@ -1,5 +1,7 @@
 package org.ewgf.configuration;
 
+import org.ewgf.utils.RateLimiter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
@@ -15,4 +17,10 @@ public class RestConfig
         factory.setReadTimeout(5000);    // 5 seconds
         return new RestTemplate(factory);
     }
+
+    // Every request to the Wavu API goes through this one limiter, however many fetchers are running
+    @Bean(name = "wavuRateLimiter")
+    public RateLimiter wavuRateLimiter(@Value("${wavu.max-requests-per-second:5}") double maxRequestsPerSecond) {
+        return new RateLimiter(maxRequestsPerSecond);
+    }
 }
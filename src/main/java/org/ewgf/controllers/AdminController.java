@@ -5,7 +5,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.ewgf.configuration.BackpressureManager;
 import org.ewgf.configuration.MessageConsumptionManager;
 import org.ewgf.configuration.RabbitMQConfig;
+import org.ewgf.dtos.RevalidationStatusDTO;
 import org.ewgf.services.CharacterStatsRevalidationService;
+import org.ewgf.services.PlayerMatchupService;
 import org.ewgf.services.RefetchBattleService;
 import org.ewgf.utils.EventPublisherUtils;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,6 +16,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.http.ResponseEntity;
 
@@ -30,19 +33,22 @@ public class AdminController {
     private final RefetchBattleService refetchBattleService;
     private final EventPublisherUtils eventPublisherUtils;
     private final MessageConsumptionManager messageConsumptionManager;
+    private final PlayerMatchupService playerMatchupService;
 
     public AdminController(
             CharacterStatsRevalidationService revalidationService,
             @Value("${admin.auth.token}") String devAuthToken,
             RefetchBattleService refetchBattleService,
             EventPublisherUtils eventPublisherUtils,
-            MessageConsumptionManager messageConsumptionManager) {
+            MessageConsumptionManager messageConsumptionManager,
+            PlayerMatchupService playerMatchupService) {
 
         this.revalidationService = revalidationService;
         this.devAuthToken = devAuthToken;
         this.refetchBattleService = refetchBattleService;
         this.eventPublisherUtils = eventPublisherUtils;
         this.messageConsumptionManager = messageConsumptionManager;
+        this.playerMatchupService = playerMatchupService;
     }
 
     private boolean isAuthenticated(String authToken) {
@@ -58,6 +64,7 @@ public class AdminController {
     @GetMapping("/revalidateCharacterStats")
     public ResponseEntity<String> revalidateCharacterStats(
             @RequestHeader(value = HttpHeaders.AUTHORIZATION) String authToken,
+            @RequestParam(value = "restart", defaultValue = "false") boolean restart,
             HttpServletRequest request) {
 
         log.info("Received revalidation request from IP: {}", request.getRemoteAddr());
@@ -71,7 +78,7 @@ public class AdminController {
         CompletableFuture.runAsync(() -> {
             try {
                 log.info("Starting asynchronous revalidation process");
-                revalidationService.startRevalidation();
+                revalidationService.startRevalidation(restart);
                 log.info("Revalidation process completed successfully");
             } catch (Exception e) {
                 log.error("Error during asynchronous revalidation", e);
@@ -82,6 +89,42 @@ public class AdminController {
         return ResponseEntity.accepted().body("Revalidation process started successfully");
     }
 
+    @GetMapping("/revalidationStatus")
+    public ResponseEntity<RevalidationStatusDTO> getRevalidationStatus(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION) String authToken,
+            HttpServletRequest request) {
+
+        if (!isAuthenticated(authToken)) {
+            log.warn("Unauthorized revalidation status request from IP: {}", request.getRemoteAddr());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        return ResponseEntity.ok(revalidationService.getStatus());
+    }
+
+
+    @GetMapping("/backfillPlayerMatchups")
+    public ResponseEntity<String> backfillPlayerMatchups(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION) String authToken,
+            HttpServletRequest request) {
+
+        if (!isAuthenticated(authToken)) {
+            log.warn("Unauthorized matchup backfill attempt from IP: {}", request.getRemoteAddr());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized");
+        }
+
+        CompletableFuture.runAsync(() -> {
+            try {
+                log.info("Starting player matchup backfill");
+                playerMatchupService.backfill();
+                log.info("Player matchup backfill completed successfully");
+            } catch (Exception e) {
+                log.error("Error during player matchup backfill", e);
+            }
+        });
+
+        return ResponseEntity.accepted().body("Player matchup backfill started successfully");
+    }
 
     @GetMapping("/refetch")
     public ResponseEntity<String> fetchHistoricalBattles(
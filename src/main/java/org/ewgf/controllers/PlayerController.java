@@ -37,6 +37,16 @@ public class PlayerController {
         return ResponseEntity.ok(playerDTO);
     }
 
+    @GetMapping("/{polarisId}/battles")
+    public ResponseEntity<BattlePageDTO> getPlayerBattles(
+            @PathVariable String polarisId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) throws Exception {
+        BattlePageDTO page = playerService.getPlayerBattles(polarisId, cursor, limit);
+        if (page == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(page);
+    }
+
     @GetMapping("/search")
     public ResponseEntity<List<PlayerSearchDTO>> searchPlayers(@RequestParam String query) {
         if (query == null || query.trim().isBlank() || query.trim().length() >= 20) {
@@ -48,6 +58,16 @@ public class PlayerController {
         return ResponseEntity.ok(projections);
     }
 
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<AutocompleteSuggestionDTO>> autocomplete(
+            @RequestParam String query,
+            @RequestParam(required = false) Integer limit) throws Exception {
+        if (query.isBlank() || query.trim().length() >= 20) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(playerService.autocomplete(query.trim(), limit));
+    }
+
     @GetMapping("/metaData/{polarisId}")
     public ResponseEntity<PlayerMetadataDTO> getPlayerMetadata(@PathVariable String polarisId) {
         PlayerMetadataDTO metadata = playerService.getPlayerMetadata(polarisId);
@@ -6,7 +6,12 @@ import lombok.extern.slf4j.Slf4j;
 
 import org.ewgf.response.CombinedLeaderboardResponse;
 import org.ewgf.services.PolarisProxyService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.bind.annotation.*;
 
 import org.ewgf.dtos.*;
@@ -44,60 +49,51 @@ public class StatisticsController {
     }
 
     @GetMapping("/version-popularity")
-    public ResponseEntity<Map<String, CharacterPopularityDTO>> getVersionPopularity() throws Exception {
+    public ResponseEntity<byte[]> getVersionPopularity(ServletWebRequest request) {
         log.debug("Fetching popularity stats for all game versions");
-        Map<String, CharacterPopularityDTO> popularity = statisticsService.getAllVersionPopularity();
-        return ResponseEntity.ok(popularity);
+        return preparedResponse(StatisticsSnapshot.VERSION_POPULARITY, request);
     }
 
     @GetMapping("/version-winrates")
-    public ResponseEntity<Map<String, CharacterWinratesDTO>> getVersionWinrates() throws Exception {
+    public ResponseEntity<byte[]> getVersionWinrates(ServletWebRequest request) {
         log.debug("Fetching winrates for all game versions");
-        Map<String, CharacterWinratesDTO> winrates = statisticsService.getAllVersionWinrates();
-        return ResponseEntity.ok(winrates);
+        return preparedResponse(StatisticsSnapshot.VERSION_WINRATES, request);
     }
 
     @GetMapping("/top-popularity")
-    public ResponseEntity<CharacterPopularityDTO> getTop5CharacterPopularityStats() throws Exception {
+    public ResponseEntity<byte[]> getTop5CharacterPopularityStats(ServletWebRequest request) {
         log.debug("Fetching top 5 popular characters");
-        CharacterPopularityDTO popularity = statisticsService.getHomePageCharacterPopularity();
-        return ResponseEntity.ok(popularity);
+        return preparedResponse(StatisticsSnapshot.TOP_POPULARITY, request);
     }
 
     @GetMapping("/top-winrates")
-    public ResponseEntity<CharacterWinratesDTO> getTop5CharacterWinratesStats() throws Exception {
+    public ResponseEntity<byte[]> getTop5CharacterWinratesStats(ServletWebRequest request) {
         log.debug("Fetching top 5 highest winrate characters");
-        CharacterWinratesDTO winratesDTO = statisticsService.getHomePageCharacterWinrates();
-        return ResponseEntity.ok(winratesDTO);
+        return preparedResponse(StatisticsSnapshot.TOP_WINRATES, request);
     }
 
     @GetMapping("/gameVersions")
-    public ResponseEntity<List<Integer>> getGameVersions(HttpServletRequest request) throws InterruptedException {
+    public ResponseEntity<byte[]> getGameVersions(ServletWebRequest request) {
         log.debug("Received request for gameVersions");
-        return statisticsService.getGameVersions()
-                .map(ResponseEntity::ok)
-                .orElse(ResponseEntity.notFound().build());
+        return preparedResponse(StatisticsSnapshot.GAME_VERSIONS, request);
     }
 
     @GetMapping("/rankDistribution")
-    public ResponseEntity<Map<Integer, RankDistributionDTO>> getAllRankDistributions() {
+    public ResponseEntity<byte[]> getAllRankDistributions(ServletWebRequest request) {
         log.debug("Fetching rank distribution for all versions");
-        Map<Integer, RankDistributionDTO> result = statisticsService.getAllRankDistributions();
-        return ResponseEntity.ok(result);
+        return preparedResponse(StatisticsSnapshot.RANK_DISTRIBUTION, request);
     }
 
     @GetMapping("/winrate-changes")
-    public ResponseEntity<Map<String, List<RankWinrateChangesDTO>>> getWinrateChanges() {
+    public ResponseEntity<byte[]> getWinrateChanges(ServletWebRequest request) {
         log.debug("Fetching character winrate changes");
-        Map<String, List<RankWinrateChangesDTO>> groupedChanges = statisticsService.getHomePageWinrateChanges();
-        return ResponseEntity.ok(groupedChanges);
+        return preparedResponse(StatisticsSnapshot.WINRATE_CHANGES, request);
     }
 
     @GetMapping("/allWinrateChanges")
-    public ResponseEntity<Map<String, List<RankWinrateChangesDTO>>> getAllWinrateChanges() {
+    public ResponseEntity<byte[]> getAllWinrateChanges(ServletWebRequest request) {
         log.debug("Fetching all character winrate changes");
-        Map<String, List<RankWinrateChangesDTO>> groupedChanges = statisticsService.getAllWinrateChanges();
-        return ResponseEntity.ok(groupedChanges);
+        return preparedResponse(StatisticsSnapshot.ALL_WINRATE_CHANGES, request);
     }
 
     @GetMapping("/leaderboards")
@@ -107,6 +103,73 @@ public class StatisticsController {
         return ResponseEntity.ok(polarisProxyService.fetchLeaderboardFromProxy(params));
     }
 
+    /*
+     * Statistics bodies are serialized and gzipped once per snapshot, so a hit only copies bytes.
+     * The ETag changes whenever the body is rebuilt and differs between the gzip and identity
+     * representations, so caches never hand one encoding's validator to the other; a matching
+     * If-None-Match gets a 304.
+     */
+    private ResponseEntity<byte[]> preparedResponse(String endpoint, ServletWebRequest request) {
+        Optional<PreparedResponse> response = statisticsService.getSnapshot().getResponse(endpoint);
+        if (response.isEmpty()) return ResponseEntity.notFound().build();
+
+        boolean gzip = acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String etag = "\"stats-" + response.get().getVersion() + (gzip ? "-gzip" : "") + "\"";
+        if (request.checkNotModified(etag)) {
+            // a 304 carries the same Vary as the 200 it stands for (RFC 9110 15.4.5)
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+
+        // Content-Encoding being set also keeps Tomcat from compressing the body again
+        if (gzip) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(response.get().getGzip());
+        }
+        return builder.body(response.get().getIdentity());
+    }
+
+    // gzip (or x-gzip, or * when gzip is not listed) with a non-zero q-value, per RFC 9110 12.5.3
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+
+        Boolean gzip = null;
+        boolean wildcard = false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            boolean accepted = qValue(parts) > 0;
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzip = (gzip == null ? accepted : gzip || accepted);
+            } else if (name.equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return gzip != null ? gzip : wildcard;
+    }
+
+    private static double qValue(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String param = parts[i].trim();
+            if (param.length() > 2 && (param.charAt(0) == 'q' || param.charAt(0) == 'Q') && param.charAt(1) == '=') {
+                try {
+                    return Double.parseDouble(param.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
     private TekkenStatsSummaryDTO convertToDTO(TekkenStatsSummary tekkenStatsSummary) {
         TekkenStatsSummaryDTO dto = new TekkenStatsSummaryDTO();
         dto.setTotalPlayers(tekkenStatsSummary.getTotalPlayers());
@@ -0,0 +1,14 @@
+package org.ewgf.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AutocompleteSuggestionDTO {
+    private String name;
+    private String polarisId;
+    private Integer regionId;
+}
@@ -0,0 +1,17 @@
+package org.ewgf.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BattlePageDTO {
+    private List<BattleDTO> battles = new ArrayList<>();
+    // null on the last page
+    private String nextCursor;
+}
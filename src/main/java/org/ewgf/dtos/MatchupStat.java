@@ -20,6 +20,13 @@ public class MatchupStat {
         calculateWinrate();
     }
 
+    public void addResults(int wins, int losses) {
+        this.wins += wins;
+        this.losses += losses;
+        this.totalMatches += wins + losses;
+        calculateWinrate();
+    }
+
     public void calculateWinrate(){
         this.winRate = totalMatches > 0 ? ((float) this.wins / totalMatches ) * 100 : 0f;
     }
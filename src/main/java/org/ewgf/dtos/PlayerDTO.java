@@ -17,5 +17,7 @@ public class PlayerDTO {
     private long latestBattle;
     private Map<String, String> mainCharacterAndRank = new HashMap<>();
     private Map<String, PlayerMatchupSummaryDTO> playedCharacters = new HashMap<>();
+    // first page of the battle history, the rest is fetched with nextBattleCursor
     private List<BattleDTO> battles = new ArrayList<>();
+    private String nextBattleCursor;
 }
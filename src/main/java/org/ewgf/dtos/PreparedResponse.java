@@ -0,0 +1,13 @@
+package org.ewgf.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// A JSON body serialized once, kept both uncompressed and gzipped, with the snapshot version it was built in
+@Getter
+@AllArgsConstructor
+public class PreparedResponse {
+    private final long version;
+    private final byte[] identity;
+    private final byte[] gzip;
+}
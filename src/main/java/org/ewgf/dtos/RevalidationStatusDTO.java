@@ -0,0 +1,21 @@
+package org.ewgf.dtos;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class RevalidationStatusDTO {
+    private String job;
+    private boolean running;
+    // players in per-player mode, game versions in set-based mode
+    private long processed;
+    private long total;
+    private String lastKey;
+    private Long startedAt;
+    private Long updatedAt;
+    private Long completedAt;
+    // measured over the current run only, null while idle
+    private Double processedPerSecond;
+    private Long etaSeconds;
+}
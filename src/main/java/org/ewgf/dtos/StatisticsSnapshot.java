@@ -0,0 +1,41 @@
+package org.ewgf.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Every /statistics response built from one statistics run, swapped in as a whole. A section whose rebuild
+// failed is carried over from the previous snapshot, with its older version.
+@Getter
+@AllArgsConstructor
+public class StatisticsSnapshot {
+    public static final String VERSION_POPULARITY = "version-popularity";
+    public static final String VERSION_WINRATES = "version-winrates";
+    public static final String TOP_POPULARITY = "top-popularity";
+    public static final String TOP_WINRATES = "top-winrates";
+    public static final String GAME_VERSIONS = "gameVersions";
+    public static final String RANK_DISTRIBUTION = "rankDistribution";
+    public static final String WINRATE_CHANGES = "winrate-changes";
+    public static final String ALL_WINRATE_CHANGES = "allWinrateChanges";
+
+    private final long version;
+    private final Map<String, CharacterPopularityDTO> versionPopularity;
+    private final Map<String, CharacterWinratesDTO> versionWinrates;
+    private final CharacterPopularityDTO topPopularity;
+    private final CharacterWinratesDTO topWinrates;
+    private final Optional<List<Integer>> gameVersions;
+    private final Map<Integer, RankDistributionDTO> rankDistributions;
+    private final Map<String, List<RankWinrateChangesDTO>> homePageWinrateChanges;
+    private final Map<String, List<RankWinrateChangesDTO>> allWinrateChanges;
+    // keyed by the endpoint names above; absent when there is nothing to serve
+    private final Map<String, PreparedResponse> responses;
+    // false if a section failed with no earlier value to fall back on
+    private final boolean complete;
+
+    public Optional<PreparedResponse> getResponse(String endpoint) {
+        return Optional.ofNullable(responses.get(endpoint));
+    }
+}
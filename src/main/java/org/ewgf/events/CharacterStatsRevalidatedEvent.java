@@ -0,0 +1,12 @@
+package org.ewgf.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Published when a character stats revalidation run ends, in any mode and whether or not it failed
+@Data
+@AllArgsConstructor
+public class CharacterStatsRevalidatedEvent
+{
+    private String mode;
+}
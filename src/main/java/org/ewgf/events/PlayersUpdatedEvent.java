@@ -0,0 +1,14 @@
+package org.ewgf.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Set;
+
+// Player ids that appear in the battles inserted by one ingest batch
+@Data
+@AllArgsConstructor
+public class PlayersUpdatedEvent
+{
+    private Set<String> playerIds;
+}
@@ -0,0 +1,12 @@
+package org.ewgf.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Published once aggregated_statistics has been updated by a statistics run
+@Data
+@AllArgsConstructor
+public class StatisticsComputedEvent
+{
+    private long computedAt;
+}
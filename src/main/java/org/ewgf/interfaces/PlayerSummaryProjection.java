@@ -0,0 +1,14 @@
+package org.ewgf.interfaces;
+
+public interface PlayerSummaryProjection {
+    String getPlayerId();
+    String getName();
+    String getPolarisId();
+    Integer getRegionId();
+    Long getTekkenPower();
+    Long getLatestBattle();
+    String getMainCharacterId();
+    Integer getMainDanRank();
+    String getRecentCharacterId();
+    Integer getRecentDanRank();
+}
@@ -40,12 +40,27 @@ public class Player {
     @Column(name = "language")
     private String language;
 
+    // maintained by PlayerCharacterSummaryService
+    @Column(name = "main_character_id")
+    private String mainCharacterId;
+
+    @Column(name = "main_dan_rank")
+    private Integer mainDanRank;
+
+    @Column(name = "recent_character_id")
+    private String recentCharacterId;
+
+    @Column(name = "recent_dan_rank")
+    private Integer recentDanRank;
+
     // Update the map to use a composite key of character ID and game version
-    @OneToMany(mappedBy = "player", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
+    // Lazy: only the profile needs it, and it asks for it through an entity graph
+    @OneToMany(mappedBy = "player", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     @MapKeyJoinColumns({
             @MapKeyJoinColumn(name = "character_id"),
             @MapKeyJoinColumn(name = "game_version")
     })
+    @ToString.Exclude
     private Map<CharacterStatsId, CharacterStats> characterStats = new HashMap<>();
 
 
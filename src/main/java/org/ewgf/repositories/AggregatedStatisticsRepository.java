@@ -14,9 +14,6 @@ import java.util.Optional;
 @Repository
 public interface AggregatedStatisticsRepository extends JpaRepository<AggregatedStatistic, AggregatedStatisticId> {
 
-    List<AggregatedStatistic> findByIdGameVersionAndIdCategory(int gameVersion, String category);
-
-
     @Query(value = """
     WITH global_all_ranks AS (
         SELECT
@@ -20,17 +20,46 @@ public interface BattleRepository extends JpaRepository<Battle, String> {
             nativeQuery = true)
     Optional<Battle> findNewestRankedBattle();
 
-    @Query(value = "SELECT * FROM battles WHERE " +
-            "(player1_id = :playerId OR player1_id = LPAD(:playerId, 18, '0') OR player1_id = LTRIM(:playerId, '0')) OR " +
-            "(player2_id = :playerId OR player2_id = LPAD(:playerId, 18, '0') OR player2_id = LTRIM(:playerId, '0')) " +
-            "ORDER BY battles.battle_at DESC",
+    /*
+     * One page of a player's battles, newest first, starting after the (battleAt, battleId) cursor.
+     * Player ids are stored normalized, so each side is a single LIMITed range scan on its
+     * (playerN_id, battle_at, battle_id) index. A battle against oneself matches both sides, so the
+     * player2 side skips it. Plans: benchmarks/battle_page_explain.sql.
+     */
+    @Query(value = "SELECT * FROM (" +
+            "(SELECT * FROM battles WHERE player1_id = :playerId AND (battle_at, battle_id) < (:beforeAt, :beforeId) " +
+            "ORDER BY battle_at DESC, battle_id DESC LIMIT :limit) " +
+            "UNION ALL " +
+            "(SELECT * FROM battles WHERE player2_id = :playerId AND player1_id <> player2_id " +
+            "AND (battle_at, battle_id) < (:beforeAt, :beforeId) " +
+            "ORDER BY battle_at DESC, battle_id DESC LIMIT :limit) " +
+            ") page ORDER BY battle_at DESC, battle_id DESC LIMIT :limit",
             nativeQuery = true)
-    Optional<List<Battle>> findAllBattlesByPlayer(@Param("playerId") String playerId);
+    List<Battle> findBattlePageByPlayer(@Param("playerId") String playerId,
+                                        @Param("beforeAt") long beforeAt,
+                                        @Param("beforeId") String beforeId,
+                                        @Param("limit") int limit);
 
-    @Query(value = "SELECT * FROM battles " +
-            "WHERE player1_id = :playerId OR player2_id = :playerId " +
-            "ORDER BY battles.battle_at DESC",
+    /*
+     * Battles between two players where only one side was claimed by partitioned ingest, among the
+     * claims made in [from, to). The other partition's delivery was lost or is still failing.
+     */
+    @Query(value = "SELECT b.* FROM battle_player_claims c JOIN battles b ON b.battle_id = c.battle_id " +
+            "WHERE c.claimed_at >= :from AND c.claimed_at < :to AND b.player1_id <> b.player2_id " +
+            "AND NOT EXISTS (SELECT 1 FROM battle_player_claims o " +
+            "WHERE o.battle_id = c.battle_id AND o.player_id <> c.player_id) " +
+            "LIMIT :limit",
+            nativeQuery = true)
+    List<Battle> findHalfClaimedBattles(@Param("from") long from,
+                                        @Param("to") long to,
+                                        @Param("limit") int limit);
+
+    // Same two index scans as the page query, and a battle against oneself is returned once
+    @Query(value = "SELECT * FROM battles WHERE player1_id = :playerId " +
+            "UNION ALL " +
+            "SELECT * FROM battles WHERE player2_id = :playerId AND player1_id <> player2_id " +
+            "ORDER BY battle_at DESC",
             nativeQuery = true)
     Optional<List<Battle>> findAllBattlesByPlayerId(@Param("playerId") String playerId);
 
-}
\ No newline at end of file
+}
@@ -1,12 +1,13 @@
 package org.ewgf.repositories;
 
 
-import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.ewgf.interfaces.PlayerSummaryProjection;
 import org.ewgf.models.Player;
 
 import java.util.List;
@@ -16,22 +17,65 @@ import java.util.Optional;
 @Repository
 public interface PlayerRepository extends JpaRepository<Player, String> {
 
+    // flat player columns, never loads character_stats
+    String PLAYER_SUMMARY_COLUMNS =
+            "player_id as playerId, name as name, polaris_id as polarisId, region_id as regionId, " +
+            "tekken_power as tekkenPower, latest_battle as latestBattle, " +
+            "main_character_id as mainCharacterId, main_dan_rank as mainDanRank, " +
+            "recent_character_id as recentCharacterId, recent_dan_rank as recentDanRank ";
+
+    // The profile reads every character_stats row, so fetch them in the same query
+    @EntityGraph(attributePaths = "characterStats")
     @Query("SELECT p FROM Player p WHERE p.polarisId = :criteria")
     Optional<Player> findByPolarisId(@Param("criteria") String criteria);
 
-    @Query("SELECT p FROM Player p WHERE LOWER(p.name) LIKE LOWER(CONCAT('%', :query, '%')) " +
-            "OR LOWER(p.polarisId) LIKE LOWER(CONCAT('%', REPLACE(:query, '-', ''), '%')) " +
+    /*
+     * Substring search served by the pg_trgm GIN indexes on lower(name) and lower(polaris_id).
+     * :query is the lower-cased query, :pattern the same with LIKE wildcards escaped. Ranking: exact name,
+     * then name prefix, then anything else, shorter names first. Queries shorter than a trigram get no help
+     * from the GIN indexes and scan players, see searchByNamePrefix. Plans: benchmarks/player_search_explain.sql.
+     */
+    @Query(value = "SELECT " + PLAYER_SUMMARY_COLUMNS + "FROM players " +
+            "WHERE lower(name) LIKE '%' || :pattern || '%' " +
+            "OR lower(polaris_id) LIKE '%' || REPLACE(:pattern, '-', '') || '%' " +
             "ORDER BY CASE " +
-            "  WHEN LOWER(p.name) = LOWER(:query) THEN 0 " +
-            "  WHEN LOWER(p.name) LIKE LOWER(CONCAT(:query, '%')) THEN 1 " +
+            "  WHEN lower(name) = :query THEN 0 " +
+            "  WHEN lower(name) LIKE :pattern || '%' THEN 1 " +
             "  ELSE 20 END, " +
-            "length(p.name)")
-    Optional<List<Player>> findByNameOrPolarisIdContainingIgnoreCase(@Param("query") String query, PageRequest pageRequest);
+            "length(name) " +
+            "LIMIT :limit",
+            nativeQuery = true)
+    Optional<List<PlayerSummaryProjection>> searchByNameOrPolarisId(@Param("query") String query,
+                                                    @Param("pattern") String pattern,
+                                                    @Param("limit") int limit);
+
+    /*
+     * Name prefix matches only, the top of searchByNameOrPolarisId's ranking. An anchored pattern is served by
+     * the lower(name) indexes even for queries shorter than a trigram, where the substring search has to scan
+     * players; a full page from here is the same answer the substring search would give.
+     */
+    @Query(value = "SELECT " + PLAYER_SUMMARY_COLUMNS + "FROM players " +
+            "WHERE lower(name) LIKE :pattern || '%' " +
+            "ORDER BY CASE WHEN lower(name) = :query THEN 0 ELSE 1 END, " +
+            "length(name) " +
+            "LIMIT :limit",
+            nativeQuery = true)
+    Optional<List<PlayerSummaryProjection>> searchByNamePrefix(@Param("query") String query,
+                                                               @Param("pattern") String pattern,
+                                                               @Param("limit") int limit);
 
     // 600 is in seconds
-    @Query(value = "SELECT * FROM players " +
+    @Query(value = "SELECT " + PLAYER_SUMMARY_COLUMNS + "FROM players " +
             "WHERE latest_battle > (EXTRACT(EPOCH FROM NOW()) - 600) ORDER BY latest_battle DESC LIMIT 40", nativeQuery = true)
-    Optional<List<Player>> findAllActivePlayersInLast10Minutes();
+    Optional<List<PlayerSummaryProjection>> findAllActivePlayersInLast10Minutes();
+
+    @Query(value = "SELECT " + PLAYER_SUMMARY_COLUMNS + "FROM players WHERE polaris_id = :polarisId", nativeQuery = true)
+    Optional<PlayerSummaryProjection> findSummaryByPolarisId(@Param("polarisId") String polarisId);
+
+    // Keyset page of ids, served from the primary key index however deep the page is
+    @Query(value = "SELECT player_id FROM players WHERE player_id > :lastPlayerId ORDER BY player_id LIMIT :limit",
+            nativeQuery = true)
+    List<String> findPlayerIdsAfter(@Param("lastPlayerId") String lastPlayerId, @Param("limit") int limit);
 
     @Query("SELECT p.playerId FROM Player p WHERE p.polarisId = :polarisId")
     Optional<String> findPolarisIdByPlayerId(@Param("polarisId") String polarisId);
@@ -0,0 +1,81 @@
+package org.ewgf.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.ewgf.models.Battle;
+
+import java.util.List;
+
+/*
+ * Decides how far one walker (the live fetcher or a backfill range) moves its "before" cursor after each
+ * response. The API always answers for the API_WINDOW_SECONDS before the cursor, capped at the page limit:
+ * - full page: the window may be truncated, so the cursor continues from the oldest battle returned
+ *   (battle_at <= before is inclusive, so that second is fetched again, never skipped)
+ * - dense page: the overlap goes back to its maximum
+ * - sparse page: the overlap halves towards its minimum, so quiet hours take fewer, wider steps
+ * Not thread safe, each walker owns one.
+ */
+public class AdaptiveFetchWindow {
+
+    public static final int API_WINDOW_SECONDS = 700;
+
+    private static final double SPARSE_FILL_RATIO = 0.25;
+    private static final double DENSE_FILL_RATIO = 0.75;
+
+    private final int pageLimit;
+    private final int minOverlapSeconds;
+    private final int maxOverlapSeconds;
+    private final DistributionSummary windowSeconds;
+    private final DistributionSummary fillRatio;
+    private final Counter truncatedPages;
+
+    private int overlapSeconds;
+
+    public AdaptiveFetchWindow(int pageLimit, int minOverlapSeconds, int maxOverlapSeconds,
+                               MeterRegistry meterRegistry, String fetcher) {
+        this.pageLimit = pageLimit;
+        this.minOverlapSeconds = minOverlapSeconds;
+        this.maxOverlapSeconds = maxOverlapSeconds;
+        this.overlapSeconds = maxOverlapSeconds;
+        this.windowSeconds = DistributionSummary.builder("ewgf.wavu.fetch.window")
+                .description("Seconds the fetch cursor moved after a response")
+                .baseUnit("seconds")
+                .tag("fetcher", fetcher)
+                .register(meterRegistry);
+        this.fillRatio = DistributionSummary.builder("ewgf.wavu.fetch.fill.ratio")
+                .description("Battles returned per request relative to the page limit")
+                .tag("fetcher", fetcher)
+                .register(meterRegistry);
+        this.truncatedPages = Counter.builder("ewgf.wavu.fetch.truncated")
+                .description("Responses that hit the page limit")
+                .tag("fetcher", fetcher)
+                .register(meterRegistry);
+    }
+
+    // Returns the cursor for the next request, always strictly below the current one
+    public long nextBefore(long before, List<Battle> battles) {
+        int returned = battles == null ? 0 : battles.size();
+        fillRatio.record(Math.min(1.0, (double) returned / pageLimit));
+
+        long next;
+        if (returned >= pageLimit) {
+            truncatedPages.increment();
+            overlapSeconds = maxOverlapSeconds;
+            long oldestReturned = battles.stream().mapToLong(Battle::getBattleAt).min().orElse(before - 1);
+            // a page filled by a single second cannot be split further, step past it
+            next = Math.min(oldestReturned, before - 1);
+        } else {
+            double fill = (double) returned / pageLimit;
+            if (fill >= DENSE_FILL_RATIO) {
+                overlapSeconds = maxOverlapSeconds;
+            } else if (fill < SPARSE_FILL_RATIO) {
+                overlapSeconds = Math.max(minOverlapSeconds, overlapSeconds / 2);
+            }
+            next = before - (API_WINDOW_SECONDS - overlapSeconds);
+        }
+
+        windowSeconds.record(before - next);
+        return next;
+    }
+}
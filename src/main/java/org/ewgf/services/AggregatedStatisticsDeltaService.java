@@ -0,0 +1,228 @@
+package org.ewgf.services;
+
+import org.ewgf.aggregations.AggregatedStatisticId;
+import org.ewgf.aggregations.IndividualStatistic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+
+import static org.ewgf.utils.Constants.OVERALL_CATEGORY;
+import static org.ewgf.utils.Constants.STANDARD_CATEGORY;
+
+/*
+ * Keeps aggregated_statistics up to date from ingest-time deltas instead of a full recompute.
+ * For every batch, the contribution of each touched player to the aggregated cells is computed
+ * before and after the character_stats upsert; the difference (including main character
+ * transitions) is appended to aggregated_statistics_deltas and later folded into
+ * aggregated_statistics in a single statement.
+ */
+@Service
+public class AggregatedStatisticsDeltaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AggregatedStatisticsDeltaService.class);
+
+    private static final int WINS = 0;
+    private static final int LOSSES = 1;
+    private static final int PLAYERS = 2;
+    private static final int REPLAYS = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+
+    public AggregatedStatisticsDeltaService(
+            JdbcTemplate jdbcTemplate,
+            @Value("${statistics.incremental.enabled:false}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public record PlayerContributions(List<String> playerIds, Map<AggregatedStatisticId, long[]> contributions) {}
+
+    /*
+     * Must run inside the ingest transaction before the players/character_stats upserts.
+     * The advisory locks serialize concurrent batches that touch the same player (even one
+     * that does not exist yet), so the before/after pair of one batch never sees another
+     * batch's writes. Keys are locked in sorted order to avoid lock cycles.
+     */
+    public PlayerContributions captureBefore(Collection<String> playerIds) {
+        List<String> sortedIds = new ArrayList<>(playerIds);
+        Collections.sort(sortedIds);
+
+        String lockSQL =
+                "SELECT pg_advisory_xact_lock(k) FROM " +
+                "(SELECT DISTINCT hashtext(id)::bigint AS k FROM unnest(?::varchar[]) AS id ORDER BY k) keys";
+
+        jdbcTemplate.query(lockSQL, ps -> ps.setArray(1, toSqlArray(ps.getConnection(), sortedIds)), (RowCallbackHandler) rs -> {});
+        return new PlayerContributions(sortedIds, loadContributions(sortedIds));
+    }
+
+    // Must run inside the same transaction, after the upserts
+    public void recordChanges(PlayerContributions before) {
+        long startTime = System.currentTimeMillis();
+        Map<AggregatedStatisticId, long[]> after = loadContributions(before.playerIds());
+        Map<AggregatedStatisticId, long[]> deltas = new HashMap<>(after);
+
+        for (Map.Entry<AggregatedStatisticId, long[]> entry : before.contributions().entrySet()) {
+            long[] previous = entry.getValue();
+            deltas.merge(entry.getKey(), negate(previous), (current, negated) -> add(current.clone(), negated));
+        }
+
+        List<Object[]> batchArgs = new ArrayList<>();
+        for (Map.Entry<AggregatedStatisticId, long[]> entry : deltas.entrySet()) {
+            long[] delta = entry.getValue();
+            if (isZero(delta)) continue;
+
+            AggregatedStatisticId id = entry.getKey();
+            batchArgs.add(new Object[]{
+                    id.getGameVersion(),
+                    id.getCharacterId(),
+                    id.getDanRank(),
+                    id.getCategory(),
+                    id.getRegionId(),
+                    delta[WINS],
+                    delta[LOSSES],
+                    delta[PLAYERS],
+                    delta[REPLAYS]
+            });
+        }
+
+        if (batchArgs.isEmpty()) return;
+
+        String sql =
+                "INSERT INTO aggregated_statistics_deltas " +
+                "(game_version, character_id, dan_rank, category, region_id, wins, losses, players, replays) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        jdbcTemplate.batchUpdate(sql, batchArgs);
+        logger.info("Recorded {} aggregated statistic deltas: {} ms",
+                batchArgs.size(), (System.currentTimeMillis() - startTime));
+    }
+
+    // Folds every pending delta into aggregated_statistics and removes it from the log, atomically
+    public int applyPendingDeltas() {
+        String sql = """
+            WITH drained AS (
+                DELETE FROM aggregated_statistics_deltas
+                RETURNING game_version, character_id, dan_rank, category, region_id, wins, losses, players, replays
+            ),
+            summed AS (
+                SELECT game_version, character_id, dan_rank, category, region_id,
+                       SUM(wins) AS wins, SUM(losses) AS losses, SUM(players) AS players, SUM(replays) AS replays
+                FROM drained
+                GROUP BY game_version, character_id, dan_rank, category, region_id
+            )
+            INSERT INTO aggregated_statistics
+                (game_version, character_id, dan_rank, category, region_id,
+                 total_wins, total_losses, total_players, total_replays, computed_at)
+            SELECT game_version, character_id, dan_rank, category, region_id,
+                   wins, losses, players, replays, NOW()
+            FROM summed
+            ON CONFLICT (game_version, character_id, dan_rank, category, region_id) DO UPDATE SET
+                total_wins = aggregated_statistics.total_wins + EXCLUDED.total_wins,
+                total_losses = aggregated_statistics.total_losses + EXCLUDED.total_losses,
+                total_players = aggregated_statistics.total_players + EXCLUDED.total_players,
+                total_replays = aggregated_statistics.total_replays + EXCLUDED.total_replays,
+                computed_at = EXCLUDED.computed_at
+            """;
+
+        long startTime = System.currentTimeMillis();
+        int updatedCells = jdbcTemplate.update(sql);
+        logger.info("Applied pending deltas to {} aggregated statistic cells: {} ms",
+                updatedCells, (System.currentTimeMillis() - startTime));
+        return updatedCells;
+    }
+
+    // Used by the full reconcile, whose recompute already contains these changes
+    public void discardPendingDeltas(int gameVersion) {
+        jdbcTemplate.update("DELETE FROM aggregated_statistics_deltas WHERE game_version = ?", gameVersion);
+    }
+
+    /*
+     * Mirrors StatisticsCalculationService: every character row counts towards the overall
+     * category, and only the main character (highest dan rank, then most plays) of each
+     * player and version counts towards the standard category. Rows without a region are skipped.
+     */
+    private Map<AggregatedStatisticId, long[]> loadContributions(List<String> playerIds) {
+        String sql =
+                "SELECT cs.player_id, cs.character_id, cs.game_version, cs.dan_rank, " +
+                "cs.wins, cs.losses, p.region_id " +
+                "FROM character_stats cs " +
+                "JOIN players p ON cs.player_id = p.player_id " +
+                "WHERE cs.player_id = ANY(?::varchar[]) AND p.region_id IS NOT NULL";
+
+        Map<AggregatedStatisticId, long[]> contributions = new HashMap<>();
+        Map<String, IndividualStatistic> mainCharacters = new HashMap<>();
+
+        jdbcTemplate.query(sql, ps -> ps.setArray(1, toSqlArray(ps.getConnection(), playerIds)), (ResultSet rs) -> {
+            String playerId = rs.getString(1);
+            int wins = rs.getInt(5);
+            int losses = rs.getInt(6);
+            IndividualStatistic data = new IndividualStatistic(
+                    rs.getString(2), rs.getInt(4), wins, losses, wins + losses, rs.getInt(7));
+            data.setGameVersion(rs.getInt(3));
+
+            add(contributions.computeIfAbsent(createStatisticId(data, OVERALL_CATEGORY), k -> new long[4]), data);
+
+            String mainKey = playerId + ':' + data.getGameVersion();
+            IndividualStatistic current = mainCharacters.get(mainKey);
+            if (current == null ||
+                    data.getDanRank() > current.getDanRank() ||
+                    (data.getDanRank() == current.getDanRank() && data.getTotalPlays() > current.getTotalPlays())) {
+                mainCharacters.put(mainKey, data);
+            }
+        });
+
+        for (IndividualStatistic main : mainCharacters.values()) {
+            add(contributions.computeIfAbsent(createStatisticId(main, STANDARD_CATEGORY), k -> new long[4]), main);
+        }
+        return contributions;
+    }
+
+    private static AggregatedStatisticId createStatisticId(IndividualStatistic data, String category) {
+        return new AggregatedStatisticId(
+                data.getGameVersion(),
+                data.getCharacterId(),
+                data.getDanRank(),
+                category,
+                data.getRegionId());
+    }
+
+    private static void add(long[] cell, IndividualStatistic data) {
+        cell[WINS] += data.getWins();
+        cell[LOSSES] += data.getLosses();
+        cell[PLAYERS] += 1;
+        cell[REPLAYS] += data.getTotalPlays();
+    }
+
+    private static long[] add(long[] target, long[] other) {
+        for (int i = 0; i < target.length; i++) target[i] += other[i];
+        return target;
+    }
+
+    private static long[] negate(long[] cell) {
+        long[] negated = new long[cell.length];
+        for (int i = 0; i < cell.length; i++) negated[i] = -cell[i];
+        return negated;
+    }
+
+    private static boolean isZero(long[] cell) {
+        for (long value : cell) if (value != 0) return false;
+        return true;
+    }
+
+    private static Array toSqlArray(java.sql.Connection connection, List<String> values) throws SQLException {
+        return connection.createArrayOf("varchar", values.toArray());
+    }
+}
@@ -0,0 +1,115 @@
+package org.ewgf.services;
+
+import org.ewgf.aggregations.PackedStatisticsAccumulator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+import static org.ewgf.utils.Constants.OVERALL_CATEGORY;
+import static org.ewgf.utils.Constants.STANDARD_CATEGORY;
+
+/*
+ * Writes a statistics run with multi-row INSERT ... ON CONFLICT DO UPDATE statements
+ * instead of JPA saveAll, which merges (SELECTs) every entity before writing it.
+ * Cells whose counters are identical to what is already stored are skipped.
+ */
+@Service
+public class AggregatedStatisticsWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AggregatedStatisticsWriter.class);
+
+    // 9 parameters per row keeps a statement well below the 32767 bind parameter limit
+    private static final int ROWS_PER_STATEMENT = 1000;
+
+    private static final String UPSERT_PREFIX =
+            "INSERT INTO aggregated_statistics " +
+            "(game_version, character_id, dan_rank, category, region_id, " +
+            "total_wins, total_losses, total_players, total_replays, computed_at) VALUES ";
+
+    private static final String UPSERT_ROW = "(?, ?, ?, ?, ?, ?, ?, ?, ?, NOW())";
+
+    private static final String UPSERT_SUFFIX =
+            " ON CONFLICT (game_version, character_id, dan_rank, category, region_id) DO UPDATE SET " +
+            "total_wins = EXCLUDED.total_wins, " +
+            "total_losses = EXCLUDED.total_losses, " +
+            "total_players = EXCLUDED.total_players, " +
+            "total_replays = EXCLUDED.total_replays, " +
+            "computed_at = EXCLUDED.computed_at";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AggregatedStatisticsWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public int writeChangedCells(int gameVersion, PackedStatisticsAccumulator accumulator) {
+        long startTime = System.currentTimeMillis();
+        Map<Long, int[]> storedCells = loadStoredCells(gameVersion);
+        List<Object[]> changedRows = new ArrayList<>();
+
+        accumulator.forEach((version, characterId, danRank, regionId, overall, wins, losses, players, replays) -> {
+            int[] stored = storedCells.get(PackedStatisticsAccumulator.packKey(version, characterId, danRank, regionId, overall));
+            if (stored != null && stored[0] == wins && stored[1] == losses && stored[2] == players && stored[3] == replays) {
+                return;
+            }
+            changedRows.add(new Object[]{
+                    version,
+                    String.valueOf(characterId),
+                    danRank,
+                    overall ? OVERALL_CATEGORY : STANDARD_CATEGORY,
+                    regionId,
+                    wins,
+                    losses,
+                    players,
+                    replays
+            });
+        });
+
+        for (int start = 0; start < changedRows.size(); start += ROWS_PER_STATEMENT) {
+            List<Object[]> chunk = changedRows.subList(start, Math.min(start + ROWS_PER_STATEMENT, changedRows.size()));
+            upsertChunk(chunk);
+        }
+
+        logger.info("Aggregated statistics upsert for game version {}: {} of {} cells changed, {} ms",
+                gameVersion, changedRows.size(), accumulator.size(), (System.currentTimeMillis() - startTime));
+        return changedRows.size();
+    }
+
+    private void upsertChunk(List<Object[]> rows) {
+        StringJoiner values = new StringJoiner(", ");
+        List<Object> args = new ArrayList<>(rows.size() * 9);
+        for (Object[] row : rows) {
+            values.add(UPSERT_ROW);
+            Collections.addAll(args, row);
+        }
+        jdbcTemplate.update(UPSERT_PREFIX + values + UPSERT_SUFFIX, args.toArray());
+    }
+
+    private Map<Long, int[]> loadStoredCells(int gameVersion) {
+        String sql =
+                "SELECT character_id, dan_rank, region_id, category, " +
+                "total_wins, total_losses, total_players, total_replays " +
+                "FROM aggregated_statistics WHERE game_version = ?";
+
+        Map<Long, int[]> storedCells = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            long key;
+            try {
+                key = PackedStatisticsAccumulator.packKey(
+                        gameVersion,
+                        Integer.parseInt(rs.getString(1)),
+                        rs.getInt(2),
+                        rs.getInt(3),
+                        OVERALL_CATEGORY.equals(rs.getString(4)));
+            } catch (IllegalArgumentException e) {
+                // a cell the accumulator cannot produce can never match, so it is simply not tracked
+                return;
+            }
+            storedCells.put(key, new int[]{rs.getInt(5), rs.getInt(6), rs.getInt(7), rs.getInt(8)});
+        }, gameVersion);
+        return storedCells;
+    }
+}
@@ -6,13 +6,17 @@ import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 public class BatchExecutorService {
     private final JdbcTemplate jdbcTemplate;
+    private final PlayerCharacterSummaryService playerCharacterSummaryService;
 
-    public BatchExecutorService(JdbcTemplate jdbcTemplate) {
+    public BatchExecutorService(JdbcTemplate jdbcTemplate, PlayerCharacterSummaryService playerCharacterSummaryService) {
         this.jdbcTemplate = jdbcTemplate;
+        this.playerCharacterSummaryService = playerCharacterSummaryService;
     }
 
     @Transactional(propagation = Propagation.REQUIRES_NEW)
@@ -27,5 +31,10 @@ public class BatchExecutorService {
             """;
 
         jdbcTemplate.batchUpdate(sql, batchUpdates);
+
+        Set<String> playerIds = batchUpdates.stream()
+                .map(args -> (String) args[0])
+                .collect(Collectors.toSet());
+        playerCharacterSummaryService.refresh(playerIds);
     }
 }
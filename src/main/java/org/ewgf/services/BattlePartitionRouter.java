@@ -0,0 +1,80 @@
+package org.ewgf.services;
+
+import org.ewgf.models.Battle;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/*
+ * Splits a Wavu page by player into N partitions, each with its own queue and single consumer. Every
+ * player belongs to exactly one partition, and only that partition's consumer writes the player's
+ * players, character_stats and player_matchups rows. A battle goes to the partition of each of its
+ * players; when they differ, both partitions insert the battle row idempotently and each applies its
+ * own player's side, see BattleProcessingService.processPartitionBattles.
+ */
+@Service
+public class BattlePartitionRouter {
+
+    private static final String ROUTING_KEY_PREFIX = "battle.partition.";
+
+    private final boolean enabled;
+    private final int partitions;
+
+    public BattlePartitionRouter(
+            @Value("${ingestion.partitioning.enabled:false}") boolean enabled,
+            @Value("${ingestion.partitioning.partitions:4}") int partitions) {
+        this.enabled = enabled;
+        this.partitions = Math.max(1, partitions);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public List<String> getPartitionLabels() {
+        List<String> labels = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            labels.add(String.valueOf(i));
+        }
+        return labels;
+    }
+
+    public Map<String, List<Battle>> partition(List<Battle> battles) {
+        Map<String, List<Battle>> partitioned = new HashMap<>();
+        for (Battle battle : battles) {
+            String player1Label = labelOf(battle.getPlayer1UserId());
+            String player2Label = labelOf(battle.getPlayer2UserId());
+            partitioned.computeIfAbsent(player1Label, k -> new ArrayList<>()).add(battle);
+            if (!player2Label.equals(player1Label)) {
+                partitioned.computeIfAbsent(player2Label, k -> new ArrayList<>()).add(battle);
+            }
+        }
+        return partitioned;
+    }
+
+    // Whether the consumer of this partition is the one that writes the player's rows
+    public boolean writesPlayer(String label, String playerId) {
+        return labelOf(playerId).equals(label);
+    }
+
+    String labelOf(String playerId) {
+        // ranked battles can arrive with truncated ids, so hash the id without its zero padding
+        return String.valueOf(Math.floorMod(stripLeadingZeros(playerId).hashCode(), partitions));
+    }
+
+    public static String routingKey(String label) {
+        return ROUTING_KEY_PREFIX + label;
+    }
+
+    public static String queueName(String baseQueueName, String label) {
+        return baseQueueName + ".partition." + label;
+    }
+
+    private String stripLeadingZeros(String playerId) {
+        if (playerId == null) return "";
+        int i = 0;
+        while (i < playerId.length() - 1 && playerId.charAt(i) == '0') i++;
+        return playerId.substring(i);
+    }
+}
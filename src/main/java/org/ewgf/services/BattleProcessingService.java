@@ -1,14 +1,21 @@
 package org.ewgf.services;
 
+import org.ewgf.events.PlayersUpdatedEvent;
 import org.ewgf.events.ReplayProcessingCompletedEvent;
 import org.ewgf.models.*;
+import org.ewgf.utils.PlayerIdUtils;
+import org.postgresql.PGConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.sql.*;
 import java.time.Instant;
 import java.time.ZoneId;
@@ -17,6 +24,8 @@ import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
 
 import static org.ewgf.models.BattleType.RANKED_BATTLE;
 
@@ -25,20 +34,57 @@ public class BattleProcessingService {
 
     private final JdbcTemplate jdbcTemplate;
     private final ApplicationEventPublisher eventPublisher;
+    private final AggregatedStatisticsDeltaService aggregatedStatisticsDeltaService;
+    private final PlayerMatchupService playerMatchupService;
+    private final PlayerAutocompleteIndex playerAutocompleteIndex;
+    private final PlayerCharacterSummaryService playerCharacterSummaryService;
+    private final OnlineCharacterStatsRevalidator onlineCharacterStatsRevalidator;
+    private final RecentlyActivePlayersTracker recentlyActivePlayersTracker;
 
     private static final long COOLDOWN_PERIOD = TimeUnit.MINUTES.toMillis(2); // 2 minute cooldown
     private final AtomicLong lastEventPublishTime = new AtomicLong(0);
     private final AtomicBoolean isPublishing = new AtomicBoolean(false);
     private static final Logger logger = LoggerFactory.getLogger(BattleProcessingService.class);
 
+    private static final String COPY_WRITE_MODE = "copy";
+    private static final String BATTLE_COLUMNS =
+            "battle_id, date, battle_at, battle_type, game_version, " +
+            "player1_character_id, player1_name, player1_region, " +
+            "player1_language, player1_polaris_id, player1_tekken_power, player1_dan_rank, " +
+            "player1_rating_before, player1_rating_change, player1_rounds_won, player1_id, " +
+            "player2_character_id, player2_name, player2_region, player2_language, " +
+            "player2_polaris_id, player2_tekken_power, player2_dan_rank, " +
+            "player2_rating_before, player2_rating_change, player2_rounds_won, player2_id, " +
+            "stageid, winner";
+
+    private static final BiPredicate<Battle, Integer> ALL_SIDES = (battle, playerNumber) -> true;
+    private static final char SIDE_KEY_SEPARATOR = ':';
+
+    private final String battleWriteMode;
+
     public BattleProcessingService(JdbcTemplate jdbcTemplate,
-                                   ApplicationEventPublisher eventPublisher) {
+                                   ApplicationEventPublisher eventPublisher,
+                                   AggregatedStatisticsDeltaService aggregatedStatisticsDeltaService,
+                                   PlayerMatchupService playerMatchupService,
+                                   PlayerAutocompleteIndex playerAutocompleteIndex,
+                                   PlayerCharacterSummaryService playerCharacterSummaryService,
+                                   OnlineCharacterStatsRevalidator onlineCharacterStatsRevalidator,
+                                   RecentlyActivePlayersTracker recentlyActivePlayersTracker,
+                                   @Value("${ingestion.battle-write-mode:batch}") String battleWriteMode) {
         this.jdbcTemplate = jdbcTemplate;
         this.eventPublisher = eventPublisher;
+        this.aggregatedStatisticsDeltaService = aggregatedStatisticsDeltaService;
+        this.playerMatchupService = playerMatchupService;
+        this.playerAutocompleteIndex = playerAutocompleteIndex;
+        this.playerCharacterSummaryService = playerCharacterSummaryService;
+        this.onlineCharacterStatsRevalidator = onlineCharacterStatsRevalidator;
+        this.recentlyActivePlayersTracker = recentlyActivePlayersTracker;
+        this.battleWriteMode = battleWriteMode;
     }
 
     @Transactional(rollbackFor = Exception.class)
     public void processBattlesAsync(List<Battle> battles) {
+        normalizePlayerIds(battles);
         // this will drop any duplicate battles from the batch
         Set<String> insertedBattleIds = executeBattleBatchWrite(battles);
         if (insertedBattleIds.isEmpty()) {
@@ -58,21 +104,130 @@ public class BattleProcessingService {
         HashMap<String, Player> updatedPlayers = new HashMap<>();
 
         // Instantiate objects and update relevant information
-        processBattlesAndPlayers(InsertedRankedBattles, updatedPlayers);
-        executePlayerUpdateOperations(updatedPlayers, InsertedRankedBattles.size(), InsertedUnrankedBattles.size());
+        processBattlesAndPlayers(InsertedRankedBattles, updatedPlayers, ALL_SIDES);
+        executePlayerUpdateOperations(updatedPlayers, InsertedRankedBattles, ALL_SIDES,
+                InsertedRankedBattles.size(), InsertedUnrankedBattles.size());
+        recentlyActivePlayersTracker.recordBattles(InsertedRankedBattles);
+        // delivered once the transaction commits
+        eventPublisher.publishEvent(new PlayersUpdatedEvent(extractPlayerIds(battles, insertedBattleIds)));
         tryPublishEvent(gameVersionsToProcess);
     }
 
-    private void executePlayerUpdateOperations(Map<String, Player> updatedPlayers, Integer insertedRankedBattles, Integer insertedUnrankedBattles) {
+    /*
+     * Partitioned ingest, where the consumer only writes the players ownsPlayer accepts. The battle rows
+     * are inserted idempotently by whichever partition gets there first, and that partition counts them
+     * in tekken_stats_summary. Each ranked side the partition owns is claimed once in battle_player_claims
+     * before it is applied, so a battle between players of two partitions is applied half by each
+     * partition, and a redelivered or reconciled battle never counts a side twice. A side is only claimed
+     * when its battle was inserted by this call or the other side is already claimed, so battles stored
+     * before partitioning was enabled are not counted again.
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void processPartitionBattles(List<Battle> battles, Predicate<String> ownsPlayer) {
+        normalizePlayerIds(battles);
+        Set<String> insertedBattleIds = executeBattleBatchWrite(battles);
+
+        // a side is claimed once, so a battle repeated within the message must be applied once too
+        Map<String, Battle> uniqueBattles = new LinkedHashMap<>();
+        for (Battle battle : battles) uniqueBattles.putIfAbsent(battle.getBattleId(), battle);
+        List<Battle> rankedBattles = uniqueBattles.values().stream()
+                .filter(battle -> battle.getBattleType() == RANKED_BATTLE)
+                .toList();
+        Set<String> claimedSides = claimPlayerSides(rankedBattles, insertedBattleIds, ownsPlayer);
+        if (insertedBattleIds.isEmpty() && claimedSides.isEmpty()) {
+            logger.info("No battles inserted and no player sides claimed, skipping processing");
+            return;
+        }
+
+        BiPredicate<Battle, Integer> sides = (battle, playerNumber) ->
+                claimedSides.contains(sideKey(battle.getBattleId(), getPlayerUserIdFromBattle(battle, playerNumber)));
+        List<Battle> claimedRankedBattles = rankedBattles.stream()
+                .filter(battle -> sides.test(battle, 1) || sides.test(battle, 2))
+                .toList();
+        List<Battle> insertedRankedBattles = rankedBattles.stream()
+                .filter(battle -> insertedBattleIds.contains(battle.getBattleId()))
+                .toList();
+        int insertedUnrankedBattles = insertedBattleIds.size() - insertedRankedBattles.size();
+
+        HashMap<String, Player> updatedPlayers = new HashMap<>();
+        processBattlesAndPlayers(claimedRankedBattles, updatedPlayers, sides);
+        executePlayerUpdateOperations(updatedPlayers, claimedRankedBattles, sides,
+                insertedRankedBattles.size(), insertedUnrankedBattles);
+        // the inserting partition records the battle, so both players appear once
+        recentlyActivePlayersTracker.recordBattles(insertedRankedBattles);
+        eventPublisher.publishEvent(new PlayersUpdatedEvent(new HashSet<>(updatedPlayers.keySet())));
+        tryPublishEvent(extractGameVersions(claimedRankedBattles));
+    }
+
+    // Inserts a claim for every owned side of the battles and returns the sides that were not claimed before
+    private Set<String> claimPlayerSides(List<Battle> rankedBattles, Set<String> insertedBattleIds,
+                                         Predicate<String> ownsPlayer) {
+        TreeSet<String> sideKeys = new TreeSet<>();
+        for (Battle battle : rankedBattles) {
+            if (ownsPlayer.test(battle.getPlayer1UserId())) sideKeys.add(sideKey(battle.getBattleId(), battle.getPlayer1UserId()));
+            if (ownsPlayer.test(battle.getPlayer2UserId())) sideKeys.add(sideKey(battle.getBattleId(), battle.getPlayer2UserId()));
+        }
+        if (sideKeys.isEmpty()) return Set.of();
+
+        String sql =
+                "INSERT INTO battle_player_claims (battle_id, player_id, claimed_at) " +
+                "SELECT battle_id, player_id, ? FROM unnest(?::varchar[], ?::varchar[], ?::boolean[]) " +
+                "AS claims (battle_id, player_id, inserted) " +
+                // the other partition's insert committed before ours conflicted, so its claim is visible here
+                "WHERE inserted OR EXISTS (SELECT 1 FROM battle_player_claims other " +
+                "WHERE other.battle_id = claims.battle_id AND other.player_id <> claims.player_id) " +
+                "ON CONFLICT (battle_id, player_id) DO NOTHING " +
+                "RETURNING battle_id, player_id";
+
+        List<String> battleIds = new ArrayList<>(sideKeys.size());
+        List<String> playerIds = new ArrayList<>(sideKeys.size());
+        List<Boolean> inserted = new ArrayList<>(sideKeys.size());
+        for (String sideKey : sideKeys) {
+            // player ids are digits only, so the last separator is the one sideKey added
+            int separator = sideKey.lastIndexOf(SIDE_KEY_SEPARATOR);
+            battleIds.add(sideKey.substring(0, separator));
+            playerIds.add(sideKey.substring(separator + 1));
+            inserted.add(insertedBattleIds.contains(battleIds.get(battleIds.size() - 1)));
+        }
+
+        Set<String> claimed = new HashSet<>(sideKeys.size());
+        jdbcTemplate.query(sql, ps -> {
+            ps.setLong(1, Instant.now().getEpochSecond());
+            ps.setArray(2, ps.getConnection().createArrayOf("varchar", battleIds.toArray()));
+            ps.setArray(3, ps.getConnection().createArrayOf("varchar", playerIds.toArray()));
+            ps.setArray(4, ps.getConnection().createArrayOf("boolean", inserted.toArray()));
+        }, (RowCallbackHandler) rs -> claimed.add(sideKey(rs.getString(1), rs.getString(2))));
+        return claimed;
+    }
+
+    private static String sideKey(String battleId, String playerId) {
+        return battleId + SIDE_KEY_SEPARATOR + playerId;
+    }
+
+    private void executePlayerUpdateOperations(Map<String, Player> updatedPlayers, List<Battle> rankedBattles,
+                                               BiPredicate<Battle, Integer> sides,
+                                               int insertedRankedBattles, int insertedUnrankedBattles) {
+        AggregatedStatisticsDeltaService.PlayerContributions contributionsBeforeUpdate = null;
+        if (aggregatedStatisticsDeltaService.isEnabled() && !updatedPlayers.isEmpty()) {
+            contributionsBeforeUpdate = aggregatedStatisticsDeltaService.captureBefore(updatedPlayers.keySet());
+        }
+
         executePlayerBulkOperations(updatedPlayers);
         executeCharacterStatsBulkOperations(updatedPlayers);
+        playerCharacterSummaryService.refresh(updatedPlayers.keySet());
+
+        if (contributionsBeforeUpdate != null) {
+            aggregatedStatisticsDeltaService.recordChanges(contributionsBeforeUpdate);
+        }
+        if (playerMatchupService.isEnabled()) playerMatchupService.recordMatchups(rankedBattles, sides);
         if (insertedRankedBattles > 0) updateRankedBattleCount(insertedRankedBattles);
         if (insertedUnrankedBattles > 0) updateUnrankedBattleCount(insertedUnrankedBattles);
     }
 
     private void processBattlesAndPlayers(
             List<Battle> battles,
-            HashMap<String, Player> updatedPlayers) {
+            HashMap<String, Player> updatedPlayers,
+            BiPredicate<Battle, Integer> sides) {
         if (battles.isEmpty()) {
             logger.warn("Battle batch was empty, Skipping player updates.");
             return;
@@ -83,37 +238,43 @@ public class BattleProcessingService {
         for (Battle battle : battles) {
             if (battle.getBattleType() != RANKED_BATTLE) continue;
 
-            // restore original id, since ranked battles might have player_ids truncated
-            battle.setPlayer1UserId(padPlayerIdToEighteen(battle.getPlayer1UserId()));
-            battle.setPlayer2UserId(padPlayerIdToEighteen(battle.getPlayer2UserId()));
-
             // Process Player 1
-            String player1Id = getPlayerUserIdFromBattle(battle, 1);
-            Player player1 = updatedPlayers.get(player1Id);
-            if (player1 == null) {
-                player1 = new Player();
-                setPlayerStatsWithBattle(player1, battle, 1);
-                updatedPlayers.put(player1Id, player1);
+            if (sides.test(battle, 1)) {
+                String player1Id = getPlayerUserIdFromBattle(battle, 1);
+                Player player1 = updatedPlayers.get(player1Id);
+                if (player1 == null) {
+                    player1 = new Player();
+                    setPlayerStatsWithBattle(player1, battle, 1);
+                    updatedPlayers.put(player1Id, player1);
+                }
+                setCharacterStatsWithBattle(player1, battle, 1);
             }
-            setCharacterStatsWithBattle(player1, battle, 1);
 
             // Process Player 2
-            String player2Id = getPlayerUserIdFromBattle(battle, 2);
-
-            Player player2 = updatedPlayers.get(player2Id);
-            if (player2 == null) {
-                player2 = new Player();
-                setPlayerStatsWithBattle(player2, battle, 2);
-                updatedPlayers.put(player2Id, player2);
+            if (sides.test(battle, 2)) {
+                String player2Id = getPlayerUserIdFromBattle(battle, 2);
+
+                Player player2 = updatedPlayers.get(player2Id);
+                if (player2 == null) {
+                    player2 = new Player();
+                    setPlayerStatsWithBattle(player2, battle, 2);
+                    updatedPlayers.put(player2Id, player2);
+                }
+                setCharacterStatsWithBattle(player2, battle, 2);
             }
-            setCharacterStatsWithBattle(player2, battle, 2);
         }
 
         logger.info("Updated player and battle information: {} ms", (System.currentTimeMillis() - startTime));
     }
 
 
-    public Set<String> executeBattleBatchWrite(List<Battle> batch) {
+    public Set<String> executeBattleBatchWrite(List<Battle> battles) {
+        // every consumer inserts in battle_id order, so two transactions inserting the same battles wait instead of deadlocking
+        List<Battle> batch = new ArrayList<>(battles);
+        batch.sort(Comparator.comparing(Battle::getBattleId));
+        if (COPY_WRITE_MODE.equalsIgnoreCase(battleWriteMode)) {
+            return executeBattleCopyWrite(batch);
+        }
         try {
             int CHUNK_SIZE = 1000;
             long startTime = System.currentTimeMillis();
@@ -133,7 +294,7 @@ public class BattleProcessingService {
                 inserted.addAll(insertChunk(slice));
             }
 
-            logger.info("All Battles inserted successfully: {} ms", (System.currentTimeMillis() - startTime));
+            logBattleWriteThroughput("Batch", batch.size(), startTime);
             return inserted;
         } catch (Exception e) {
             logger.error("BATTLE INSERTION FAILED: {} ", e.getMessage());
@@ -141,18 +302,117 @@ public class BattleProcessingService {
         }
     }
 
+    /*
+     * Streams the whole batch into a session-local staging table with COPY, then moves it into
+     * battles with a single INSERT ... SELECT. Returns the same set of ids as the chunked path.
+     */
+    private Set<String> executeBattleCopyWrite(List<Battle> batch) {
+        try {
+            long startTime = System.currentTimeMillis();
+
+            String createStagingSQL =
+                    "CREATE TEMP TABLE IF NOT EXISTS battles_staging " +
+                    "(LIKE battles INCLUDING DEFAULTS) ON COMMIT DELETE ROWS";
+
+            String copySQL = "COPY battles_staging (" + BATTLE_COLUMNS + ") FROM STDIN WITH (FORMAT csv)";
+
+            String insertSQL =
+                    "INSERT INTO battles (" + BATTLE_COLUMNS + ") " +
+                    "SELECT DISTINCT ON (battle_id) " + BATTLE_COLUMNS + " FROM battles_staging ORDER BY battle_id " +
+                    "ON CONFLICT (battle_id) DO NOTHING " +
+                    "RETURNING battle_id";
+
+            String csv = toCsv(batch);
+
+            Set<String> inserted = jdbcTemplate.execute((Connection con) -> {
+                try (Statement statement = con.createStatement()) {
+                    statement.execute(createStagingSQL);
+                    // clear leftovers in case an earlier attempt in this transaction failed half-way
+                    statement.execute("TRUNCATE battles_staging");
+                }
+
+                try {
+                    con.unwrap(PGConnection.class)
+                            .getCopyAPI()
+                            .copyIn(copySQL, new StringReader(csv));
+                } catch (IOException e) {
+                    throw new SQLException("COPY into battles_staging failed", e);
+                }
+
+                Set<String> ids = new HashSet<>(batch.size());
+                try (Statement statement = con.createStatement();
+                     ResultSet rs = statement.executeQuery(insertSQL)) {
+                    while (rs.next()) {
+                        ids.add(rs.getString(1));
+                    }
+                }
+                return ids;
+            });
+
+            logBattleWriteThroughput("COPY", batch.size(), startTime);
+            return inserted;
+        } catch (Exception e) {
+            logger.error("BATTLE COPY INSERTION FAILED: {} ", e.getMessage());
+            throw e;
+        }
+    }
+
+    private String toCsv(List<Battle> batch) {
+        StringBuilder csv = new StringBuilder(batch.size() * 256);
+        for (Battle b : batch) {
+            b.setDate(getReadableDateInUTC(b));
+            appendCsvText(csv, b.getBattleId()).append(',');
+            appendCsvText(csv, b.getDate()).append(',');
+            csv.append(b.getBattleAt()).append(',');
+            csv.append(b.getBattleType().getBattleCode()).append(',');
+            csv.append(b.getGameVersion()).append(',');
+            csv.append(b.getPlayer1CharacterId()).append(',');
+            appendCsvText(csv, b.getPlayer1Name()).append(',');
+            appendCsvNumber(csv, b.getPlayer1RegionId()).append(',');
+            appendCsvText(csv, b.getPlayer1Language()).append(',');
+            appendCsvText(csv, b.getPlayer1PolarisId()).append(',');
+            csv.append(b.getPlayer1TekkenPower()).append(',');
+            csv.append(b.getPlayer1DanRank()).append(',');
+            appendCsvNumber(csv, b.getPlayer1RatingBefore()).append(',');
+            appendCsvNumber(csv, b.getPlayer1RatingChange()).append(',');
+            csv.append(b.getPlayer1RoundsWon()).append(',');
+            appendCsvText(csv, b.getPlayer1UserId()).append(',');
+            csv.append(b.getPlayer2CharacterId()).append(',');
+            appendCsvText(csv, b.getPlayer2Name()).append(',');
+            appendCsvNumber(csv, b.getPlayer2RegionId()).append(',');
+            appendCsvText(csv, b.getPlayer2Language()).append(',');
+            appendCsvText(csv, b.getPlayer2PolarisId()).append(',');
+            csv.append(b.getPlayer2TekkenPower()).append(',');
+            csv.append(b.getPlayer2DanRank()).append(',');
+            appendCsvNumber(csv, b.getPlayer2RatingBefore()).append(',');
+            appendCsvNumber(csv, b.getPlayer2RatingChange()).append(',');
+            csv.append(b.getPlayer2RoundsWon()).append(',');
+            appendCsvText(csv, b.getPlayer2UserId()).append(',');
+            csv.append(b.getStageId()).append(',');
+            csv.append(b.getWinner()).append('\n');
+        }
+        return csv.toString();
+    }
+
+    // In CSV mode an unquoted empty field is NULL, a quoted one is an empty string
+    private static StringBuilder appendCsvText(StringBuilder csv, String value) {
+        if (value == null) return csv;
+        return csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private static StringBuilder appendCsvNumber(StringBuilder csv, Integer value) {
+        return value == null ? csv : csv.append(value);
+    }
+
+    private void logBattleWriteThroughput(String mode, int rows, long startTime) {
+        long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+        logger.info("All Battles inserted successfully ({}): {} ms, {} rows/sec",
+                mode, elapsed, (rows * 1000L) / elapsed);
+    }
+
     private Set<String> insertChunk(List<Battle> chunk) {
         String SQL =
-                "INSERT INTO battles (" +
-                        "battle_id, date, battle_at, battle_type, game_version, " +
-                        "player1_character_id, player1_name, player1_region, " +
-                        "player1_language, player1_polaris_id, player1_tekken_power, player1_dan_rank, " +
-                        "player1_rating_before, player1_rating_change, player1_rounds_won, player1_id, " +
-                        "player2_character_id, player2_name, player2_region, player2_language, " +
-                        "player2_polaris_id, player2_tekken_power, player2_dan_rank, " +
-                        "player2_rating_before, player2_rating_change, player2_rounds_won, player2_id, " +
-                        "stageid, winner" +
-                        ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+                "INSERT INTO battles (" + BATTLE_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
                         "ON CONFLICT (battle_id) DO NOTHING " +
                         "RETURNING battle_id";
 
@@ -180,7 +440,7 @@ public class BattleProcessingService {
                         ps.setString(i++, b.getPlayer1PolarisId());
                         ps.setLong(i++, b.getPlayer1TekkenPower());
                         ps.setInt(i++, b.getPlayer1DanRank());
-                        setNullableInt(ps, i++, b.getPlayer1RegionId());
+                        setNullableInt(ps, i++, b.getPlayer1RatingBefore());
                         setNullableInt(ps, i++, b.getPlayer1RatingChange());
                         ps.setInt(i++, b.getPlayer1RoundsWon());
                         ps.setString(i++, b.getPlayer1UserId());
@@ -255,6 +515,7 @@ public class BattleProcessingService {
 
         // Execute batch update
         jdbcTemplate.batchUpdate(sql, batchArgs);
+        playerAutocompleteIndex.onPlayersUpserted(updatedPlayersMap.values());
 
         logger.info("Player Bulk Upsert: {} ms, Processed Players: {}",
                 (System.currentTimeMillis() - startTime), updatedPlayersMap.size());
@@ -293,6 +554,7 @@ public class BattleProcessingService {
                 .thenComparing(args -> (Integer) args[2])); // game_version
 
         jdbcTemplate.batchUpdate(sql, batchArgs);
+        onlineCharacterStatsRevalidator.recordIncrements(batchArgs);
 
         logger.info("CharacterStats Bulk Upsert: {} ms, Total Processed CharacterStats: {}",
                 (System.currentTimeMillis() - startTime), batchArgs.size());
@@ -400,6 +662,16 @@ public class BattleProcessingService {
         return gameVersions;
     }
 
+    private Set<String> extractPlayerIds(List<Battle> battles, Set<String> insertedBattleIds) {
+        Set<String> playerIds = new HashSet<>();
+        for (Battle battle : battles) {
+            if (!insertedBattleIds.contains(battle.getBattleId())) continue;
+            playerIds.add(battle.getPlayer1UserId());
+            playerIds.add(battle.getPlayer2UserId());
+        }
+        return playerIds;
+    }
+
     private List<Object[]> getPlayerBatchObjects(Map<String, Player> updatedPlayersMap) {
         List<Object[]> batchArgs = new ArrayList<>();
 
@@ -510,13 +782,12 @@ public class BattleProcessingService {
         else ps.setInt(idx, val);
     }
 
-    private String padPlayerIdToEighteen(String playerId) {
-        if (playerId == null || playerId.length() >= 18) {
-            return playerId;
+    // restore original ids before anything is written, since replays might have player_ids truncated
+    private void normalizePlayerIds(List<Battle> battles) {
+        for (Battle battle : battles) {
+            battle.setPlayer1UserId(PlayerIdUtils.normalize(battle.getPlayer1UserId()));
+            battle.setPlayer2UserId(PlayerIdUtils.normalize(battle.getPlayer2UserId()));
         }
-
-        // Pad with leading zeros to reach 18 characters
-        return "0".repeat(18 - playerId.length()) + playerId;
     }
 
 }
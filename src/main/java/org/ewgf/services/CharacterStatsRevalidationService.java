@@ -2,16 +2,16 @@ package org.ewgf.services;
 
 import lombok.extern.slf4j.Slf4j;
 import org.ewgf.configuration.BackpressureManager;
+import org.ewgf.dtos.RevalidationStatusDTO;
+import org.ewgf.events.CharacterStatsRevalidatedEvent;
 import org.ewgf.models.Battle;
 import org.ewgf.models.CharacterStats;
 import org.ewgf.models.CharacterStatsId;
-import org.ewgf.models.Player;
 import org.ewgf.repositories.BattleRepository;
 import org.ewgf.repositories.CharacterStatsRepository;
 import org.ewgf.repositories.PlayerRepository;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
@@ -19,7 +19,6 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,20 +29,44 @@ public class CharacterStatsRevalidationService {
     private final BackpressureManager backpressureManager;
     private final ExecutorService executorService;
     private volatile boolean isRevalidating = false;
+    private volatile long runStartedAt;
+    private volatile long processedAtRunStart;
     private final BatchExecutorService batchExecutorService;
+    private final SetBasedCharacterStatsRevalidator setBasedRevalidator;
+    private final OnlineCharacterStatsRevalidator onlineRevalidator;
+    private final JobCheckpointStore jobCheckpointStore;
+    private final ApplicationEventPublisher eventPublisher;
+    private final String revalidationMode;
+
+    private static final String SET_BASED_MODE = "set-based";
+    private static final String ONLINE_MODE = "online";
+    private static final String PER_PLAYER_JOB_NAME = "character-stats-revalidation-per-player";
+    private static final int PAGE_SIZE = 1000;
+    private static final int PAGES_PER_WAVE = 25;
+
     public CharacterStatsRevalidationService(
             PlayerRepository playerRepository,
             BattleRepository battleRepository,
             CharacterStatsRepository characterStatsRepository,
             BackpressureManager backpressureManager,
-            BatchExecutorService batchExecutorService) {
+            BatchExecutorService batchExecutorService,
+            SetBasedCharacterStatsRevalidator setBasedRevalidator,
+            OnlineCharacterStatsRevalidator onlineRevalidator,
+            JobCheckpointStore jobCheckpointStore,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${revalidation.mode:set-based}") String revalidationMode) {
         this.playerRepository = playerRepository;
         this.battleRepository = battleRepository;
         this.backpressureManager = backpressureManager;
         this.batchExecutorService = batchExecutorService;
+        this.setBasedRevalidator = setBasedRevalidator;
+        this.onlineRevalidator = onlineRevalidator;
+        this.jobCheckpointStore = jobCheckpointStore;
+        this.eventPublisher = eventPublisher;
+        this.revalidationMode = revalidationMode;
         // Create thread executor using virtual threads
         this.executorService = Executors.newFixedThreadPool(
-                25,
+                PAGES_PER_WAVE,
                 Thread.ofVirtual()
                         .name("revalidation-", 0)
                         .factory()
@@ -51,94 +74,128 @@ public class CharacterStatsRevalidationService {
     }
 
 
-    public void startRevalidation() {
+    public void startRevalidation(boolean restart) {
         if (isRevalidating) {
             log.warn("Revalidation is already in progress");
             return;
         }
 
+        // the online mode keeps ingesting while it runs
+        boolean pauseIngestion = !ONLINE_MODE.equals(revalidationMode);
         try {
             isRevalidating = true;
-            backpressureManager.manualBackpressureActivation(); // Pause RabbitMQ consumption
-            log.info("Starting character stats revalidation");
-
-            int pageSize = 1000;
-            Page<Player> firstPage = playerRepository.findAll(PageRequest.of(0, pageSize));
-            int totalPages = firstPage.getTotalPages();
-            long totalPlayers = firstPage.getTotalElements();
-
-            log.info("Starting revalidation of {} players across {} pages", totalPlayers, totalPages);
-
-            AtomicInteger completedPages = new AtomicInteger(0);
-            CountDownLatch latch = new CountDownLatch(totalPages);
-
-            // Process first page
-            executorService.execute(() -> {
-                try {
-                    processPlayerPage(firstPage.getContent());
-                } finally {
-                    int completed = completedPages.incrementAndGet();
-                    if (completed % 10 == 0) { // Log every 10 pages
-                        log.info("Progress: {} of {} pages completed ({}%)",
-                                completed, totalPages,
-                                String.format("%.2f", (completed * 100.0) / totalPages));
-                    }
-                    latch.countDown();
-                }
-            });
-
-            // Process remaining pages
-            for (int i = 1; i < totalPages; i++) {
-                int pageNumber = i;
-                executorService.execute(() -> {
-                    try {
-                        Pageable pageable = PageRequest.of(pageNumber, pageSize);
-                        Page<Player> page = playerRepository.findAll(pageable);
-                        processPlayerPage(page.getContent());
-                    } finally {
-                        int completed = completedPages.incrementAndGet();
-                        if (completed % 10 == 0) { // Log every 10 pages
-                            log.info("Progress: {} of {} pages completed ({}%)",
-                                    completed, totalPages,
-                                    String.format("%.2f", (completed * 100.0) / totalPages));
-                        }
-                        latch.countDown();
-                    }
-                });
-            }
+            if (pauseIngestion) backpressureManager.manualBackpressureActivation(); // Pause RabbitMQ consumption
+            log.info("Starting character stats revalidation, mode: {}", revalidationMode);
+            runStartedAt = System.currentTimeMillis();
+            // resumed runs measure throughput from their checkpoint; the online mode always starts over
+            processedAtRunStart = jobCheckpointStore.find(currentJobName())
+                    .filter(checkpoint -> !checkpoint.isCompleted() && !restart && pauseIngestion)
+                    .map(JobCheckpointStore.JobCheckpoint::processed)
+                    .orElse(0L);
 
-            // Wait for all threads to complete
-            if (!latch.await(10, TimeUnit.HOURS)) {
-                log.error("Revalidation timed out after 10 hour");
-                throw new TimeoutException("Revalidation timed out");
+            if (SET_BASED_MODE.equals(revalidationMode)) {
+                setBasedRevalidator.revalidate(restart);
+            } else if (ONLINE_MODE.equals(revalidationMode)) {
+                onlineRevalidator.revalidate();
+            } else {
+                revalidatePerPlayer(restart);
             }
-
         } catch (Exception e) {
             log.error("Error during character stats revalidation", e);
             throw new RuntimeException("Character stats revalidation failed", e);
         } finally {
             isRevalidating = false;
-            backpressureManager.manualBackpressureDeactivation(); // Resume RabbitMQ consumption
+            // a failed run may still have committed part of its rewrite, so cached profiles are dropped either way
+            eventPublisher.publishEvent(new CharacterStatsRevalidatedEvent(revalidationMode));
+            if (pauseIngestion) backpressureManager.manualBackpressureDeactivation(); // Resume RabbitMQ consumption
             log.info("Character stats revalidation completed");
         }
     }
 
-    private void processPlayerPage(List<Player> players) {
+    public RevalidationStatusDTO getStatus() {
+        RevalidationStatusDTO status = new RevalidationStatusDTO();
+        status.setJob(currentJobName());
+        status.setRunning(isRevalidating);
+        Optional<JobCheckpointStore.JobCheckpoint> checkpoint = jobCheckpointStore.find(currentJobName());
+        if (checkpoint.isEmpty()) return status;
+
+        JobCheckpointStore.JobCheckpoint current = checkpoint.get();
+        status.setProcessed(current.processed());
+        status.setTotal(current.total());
+        status.setLastKey(current.lastKey());
+        status.setStartedAt(current.startedAt());
+        status.setUpdatedAt(current.updatedAt());
+        status.setCompletedAt(current.completedAt());
+
+        long elapsedMillis = System.currentTimeMillis() - runStartedAt;
+        long processedThisRun = current.processed() - processedAtRunStart;
+        if (isRevalidating && elapsedMillis > 0 && processedThisRun > 0) {
+            double perSecond = processedThisRun * 1000.0 / elapsedMillis;
+            status.setProcessedPerSecond(perSecond);
+            status.setEtaSeconds((long) (Math.max(0, current.total() - current.processed()) / perSecond));
+        }
+        return status;
+    }
+
+    /*
+     * Walks player ids in key order. Pages run in parallel one wave at a time, and the checkpoint only moves
+     * once the whole wave is written, so a restart can redo a few pages but never skips one.
+     */
+    private void revalidatePerPlayer(boolean restart) throws Exception {
+        JobCheckpointStore.JobCheckpoint checkpoint =
+                jobCheckpointStore.startOrResume(PER_PLAYER_JOB_NAME, playerRepository.count(), restart);
+        String lastPlayerId = checkpoint.lastKey() == null ? "" : checkpoint.lastKey();
+        long processed = checkpoint.processed();
+        log.info("Starting revalidation of {} players, resuming after: '{}'", checkpoint.total(), lastPlayerId);
+
+        while (true) {
+            List<List<String>> wave = new ArrayList<>(PAGES_PER_WAVE);
+            for (int i = 0; i < PAGES_PER_WAVE; i++) {
+                List<String> playerIds = playerRepository.findPlayerIdsAfter(lastPlayerId, PAGE_SIZE);
+                if (playerIds.isEmpty()) break;
+                wave.add(playerIds);
+                lastPlayerId = playerIds.get(playerIds.size() - 1);
+            }
+            if (wave.isEmpty()) break;
+
+            List<Future<?>> pages = new ArrayList<>(wave.size());
+            for (List<String> playerIds : wave) {
+                pages.add(executorService.submit(() -> processPlayerPage(playerIds)));
+            }
+            for (Future<?> page : pages) {
+                page.get();
+            }
+
+            processed += wave.stream().mapToInt(List::size).sum();
+            jobCheckpointStore.advance(PER_PLAYER_JOB_NAME, lastPlayerId, processed);
+            log.info("Progress: {} of {} players revalidated ({}%)", processed, checkpoint.total(),
+                    String.format("%.2f", (processed * 100.0) / Math.max(1, checkpoint.total())));
+        }
+        jobCheckpointStore.complete(PER_PLAYER_JOB_NAME);
+    }
+
+    private String currentJobName() {
+        if (SET_BASED_MODE.equals(revalidationMode)) return SetBasedCharacterStatsRevalidator.JOB_NAME;
+        if (ONLINE_MODE.equals(revalidationMode)) return OnlineCharacterStatsRevalidator.JOB_NAME;
+        return PER_PLAYER_JOB_NAME;
+    }
+
+    private void processPlayerPage(List<String> playerIds) {
         List<Object[]> batchUpdates = new ArrayList<>();
 
-        for (Player player : players) {
+        for (String playerId : playerIds) {
             try {
-                Optional<List<Battle>> battles = battleRepository.findAllBattlesByPlayerId(player.getPlayerId());
+                Optional<List<Battle>> battles = battleRepository.findAllBattlesByPlayerId(playerId);
                 if (battles.isEmpty()) {
                     continue;
                 }
 
-                Map<CharacterStatsId, CharacterStatsAccumulator> statsMap = calculatePlayerStats(battles.get(), player);
-                batchUpdates.addAll(prepareBatchUpdates(player.getPlayerId(), statsMap));
+                Map<CharacterStatsId, CharacterStatsAccumulator> statsMap = calculatePlayerStats(battles.get(), playerId);
+                batchUpdates.addAll(prepareBatchUpdates(playerId, statsMap));
 
 
             } catch (Exception e) {
-                log.error("Error processing player {}: {}", player.getPlayerId(), e.getMessage());
+                log.error("Error processing player {}: {}", playerId, e.getMessage());
             }
         }
 
@@ -149,12 +206,12 @@ public class CharacterStatsRevalidationService {
 
     private Map<CharacterStatsId, CharacterStatsAccumulator> calculatePlayerStats
             (List<Battle> battles,
-            Player player)
+            String playerId)
     {
         Map<CharacterStatsId, CharacterStatsAccumulator> statAccumulatorMap = new HashMap<>();
 
         for (Battle battle : battles) {
-            processBattle(battle, player.getPlayerId(), statAccumulatorMap);
+            processBattle(battle, playerId, statAccumulatorMap);
         }
 
         return statAccumulatorMap;
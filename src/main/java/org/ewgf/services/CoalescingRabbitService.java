@@ -0,0 +1,71 @@
+package org.ewgf.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.ewgf.models.Battle;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.ewgf.utils.Constants.TIMESTAMP_HEADER;
+
+/*
+ * Alternative to RabbitService for backfills: merges several Wavu pages into one
+ * processBattlesAsync call so the players/character_stats upserts and summary updates
+ * run once per batch of deliveries instead of once per page.
+ * The whole batch is one transaction, and the container acks every delivery of the batch
+ * only after this listener returns. Its size is bounded by ingestion.coalescing.max-deliveries.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "ingestion.coalescing.enabled", havingValue = "true")
+public class CoalescingRabbitService {
+
+    private static final TypeReference<List<Battle>> BATTLE_LIST_TYPE = new TypeReference<>() {};
+
+    private final BattleProcessingService battleProcessingService;
+    private final ObjectMapper objectMapper;
+
+    public CoalescingRabbitService(BattleProcessingService battleProcessingService, ObjectMapper objectMapper) {
+        this.battleProcessingService = battleProcessingService;
+        this.objectMapper = objectMapper;
+    }
+
+    @RabbitListener(queues = "#{rabbitMQConfig.queueName}",
+            containerFactory = "coalescingRabbitListenerContainerFactory")
+    public void receiveMessages(List<Message> messages) {
+        long start = System.currentTimeMillis();
+        List<Battle> merged = new ArrayList<>();
+        int skipped = 0;
+
+        for (Message message : messages) {
+            List<Battle> battles;
+            try {
+                battles = objectMapper.readValue(message.getBody(), BATTLE_LIST_TYPE);
+            } catch (IOException e) {
+                // a malformed delivery can never succeed, so it is dropped with the batch ack
+                // instead of failing (and requeueing) every other delivery merged with it
+                log.error("Skipping undeserializable delivery, timestamp: {}: {}",
+                        message.getMessageProperties().getHeader(TIMESTAMP_HEADER), e.getMessage());
+                skipped++;
+                continue;
+            }
+            log.debug("Coalescing {} battles, timestamp: {}", battles.size(),
+                    message.getMessageProperties().getHeader(TIMESTAMP_HEADER));
+            merged.addAll(battles);
+        }
+
+        if (!merged.isEmpty()) {
+            battleProcessingService.processBattlesAsync(merged);
+        }
+
+        log.info("Coalesced {} deliveries ({} skipped) into one transaction of {} battles, total operation time: {} ms",
+                messages.size(), skipped, merged.size(), System.currentTimeMillis() - start);
+    }
+}
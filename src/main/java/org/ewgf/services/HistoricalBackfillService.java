@@ -0,0 +1,189 @@
+package org.ewgf.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.ewgf.configuration.BackpressureManager;
+import org.ewgf.models.Battle;
+import org.ewgf.repositories.BattleRepository;
+import org.ewgf.utils.DateTimeUtils;
+import org.ewgf.utils.EventPublisherUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Parallel preload of historical battles (wavu.backfill.mode=parallel). The span between the oldest
+ * historical timestamp and the oldest battle already stored is split into ranges, each walked backwards
+ * by its own virtual thread with its own AdaptiveFetchWindow and RecentlySentBattleFilter. All workers
+ * share the Wavu rate limiter, so throughput grows with the worker count until the limiter's rate is
+ * reached. Every range stores where it got to in wavu_backfill_ranges, so a restart resumes each range
+ * instead of starting over.
+ */
+@Slf4j
+@Service
+public class HistoricalBackfillService implements DisposableBean {
+
+    private static final long BACKPRESSURE_WAIT_MILLIS = 10000;
+    private static final long RETRY_DELAY_MILLIS = 5000;
+    private static final int PROGRESS_LOG_INTERVAL = 100;
+
+    private static final String FIND_RANGES_SQL =
+            "SELECT range_id, lower_bound, upper_bound, next_before, completed_at " +
+            "FROM wavu_backfill_ranges ORDER BY range_id";
+
+    private static final String INSERT_RANGE_SQL =
+            "INSERT INTO wavu_backfill_ranges (range_id, lower_bound, upper_bound, next_before, completed_at) " +
+            "VALUES (?, ?, ?, ?, NULL)";
+
+    private static final String ADVANCE_RANGE_SQL =
+            "UPDATE wavu_backfill_ranges SET next_before = ? WHERE range_id = ?";
+
+    private static final String COMPLETE_RANGE_SQL =
+            "UPDATE wavu_backfill_ranges SET completed_at = ? WHERE range_id = ?";
+
+    private record BackfillRange(int rangeId, long lowerBound, long upperBound, long nextBefore, Long completedAt) {}
+
+    private final WavuService wavuService;
+    private final BattleRepository battleRepository;
+    private final BackpressureManager backpressureManager;
+    private final EventPublisherUtils eventPublisherUtils;
+    private final JdbcTemplate jdbcTemplate;
+    private final int workers;
+    private final ExecutorService executorService;
+    private volatile boolean running = true;
+
+    public HistoricalBackfillService(WavuService wavuService,
+                                     BattleRepository battleRepository,
+                                     BackpressureManager backpressureManager,
+                                     EventPublisherUtils eventPublisherUtils,
+                                     JdbcTemplate jdbcTemplate,
+                                     @Value("${wavu.backfill.workers:4}") int workers) {
+        this.wavuService = wavuService;
+        this.battleRepository = battleRepository;
+        this.backpressureManager = backpressureManager;
+        this.eventPublisherUtils = eventPublisherUtils;
+        this.jdbcTemplate = jdbcTemplate;
+        this.workers = workers;
+        this.executorService = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("wavu-backfill-", 0).factory());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBackfill() {
+        if (!wavuService.isParallelBackfill()) return;
+
+        List<BackfillRange> ranges = findRanges();
+        if (ranges.isEmpty()) ranges = planRanges();
+
+        List<BackfillRange> pending = ranges.stream().filter(range -> range.completedAt() == null).toList();
+        if (pending.isEmpty()) {
+            log.info("Historical backfill already complete.");
+            return;
+        }
+
+        log.info("Starting historical backfill of {} ranges ({} total)", pending.size(), ranges.size());
+        AtomicInteger remaining = new AtomicInteger(pending.size());
+        for (BackfillRange range : pending) {
+            executorService.execute(() -> {
+                if (!backfillRange(range)) return;
+                if (remaining.decrementAndGet() == 0) {
+                    log.info("Historical backfill complete!");
+                    eventPublisherUtils.publishEventForAllGameVersions();
+                }
+            });
+        }
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        executorService.shutdownNow();
+    }
+
+    private List<BackfillRange> planRanges() {
+        long lowerBound = WavuService.getOldestHistoricalTimestamp();
+        long upperBound = battleRepository.findOldestRankedBattle()
+                .map(Battle::getBattleAt)
+                .orElse(Instant.now().getEpochSecond());
+        if (upperBound <= lowerBound) return List.of();
+
+        long span = upperBound - lowerBound;
+        int rangeCount = (int) Math.max(1, Math.min(workers, span / AdaptiveFetchWindow.API_WINDOW_SECONDS));
+        List<BackfillRange> ranges = new ArrayList<>(rangeCount);
+        for (int i = 0; i < rangeCount; i++) {
+            long rangeUpper = upperBound - span * i / rangeCount;
+            long rangeLower = upperBound - span * (i + 1) / rangeCount;
+            ranges.add(new BackfillRange(i, rangeLower, rangeUpper, rangeUpper, null));
+            jdbcTemplate.update(INSERT_RANGE_SQL, i, rangeLower, rangeUpper, rangeUpper);
+        }
+        log.info("Planned historical backfill from {} to {} in {} ranges",
+                DateTimeUtils.toReadableTime(lowerBound), DateTimeUtils.toReadableTime(upperBound), rangeCount);
+        return ranges;
+    }
+
+    // Returns true once the range is done, false if it was stopped by shutdown
+    private boolean backfillRange(BackfillRange range) {
+        long before = range.nextBefore();
+        AdaptiveFetchWindow fetchWindow = wavuService.newFetchWindow("backfill");
+        RecentlySentBattleFilter duplicateFilter = wavuService.newDuplicateFilter("backfill");
+        int steps = 0;
+        while (before > range.lowerBound()) {
+            if (!running || Thread.currentThread().isInterrupted()) return false;
+            if (backpressureManager.isBackpressureActive()) {
+                if (!sleep(BACKPRESSURE_WAIT_MILLIS)) return false;
+                continue;
+            }
+
+            List<Battle> battles;
+            try {
+                battles = wavuService.fetchBattlesFromApi(before);
+                wavuService.processApiResponse(battles, DateTimeUtils.toReadableTime(before), duplicateFilter);
+            } catch (Exception e) {
+                // the same window is retried, so a failed request never leaves a gap
+                log.error("Backfill range {} failed at before={}: {}", range.rangeId(), before, e.getMessage());
+                if (!sleep(RETRY_DELAY_MILLIS)) return false;
+                continue;
+            }
+
+            before = fetchWindow.nextBefore(before, battles);
+            jdbcTemplate.update(ADVANCE_RANGE_SQL, before, range.rangeId());
+            if (++steps % PROGRESS_LOG_INTERVAL == 0) {
+                log.info("Backfill range {}: at {} UTC, {}% done", range.rangeId(),
+                        DateTimeUtils.toReadableTime(before),
+                        String.format("%.2f", (range.upperBound() - before) * 100.0 / (range.upperBound() - range.lowerBound())));
+            }
+        }
+
+        jdbcTemplate.update(COMPLETE_RANGE_SQL, System.currentTimeMillis(), range.rangeId());
+        log.info("Backfill range {} complete", range.rangeId());
+        return true;
+    }
+
+    private List<BackfillRange> findRanges() {
+        return jdbcTemplate.query(FIND_RANGES_SQL, (rs, rowNum) -> new BackfillRange(
+                rs.getInt("range_id"),
+                rs.getLong("lower_bound"),
+                rs.getLong("upper_bound"),
+                rs.getLong("next_before"),
+                rs.getObject("completed_at", Long.class)));
+    }
+
+    private boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.ewgf.services;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/*
+ * Persists how far a long running job got, in job_checkpoints. A job saves the last key it fully processed
+ * after each unit of work; when it is started again before completing it resumes after that key.
+ */
+@Service
+public class JobCheckpointStore {
+
+    public record JobCheckpoint(String jobName, String lastKey, long processed, long total,
+                                long startedAt, long updatedAt, Long completedAt) {
+        public boolean isCompleted() {
+            return completedAt != null;
+        }
+    }
+
+    private static final String FIND_SQL =
+            "SELECT job_name, last_key, processed, total, started_at, updated_at, completed_at " +
+            "FROM job_checkpoints WHERE job_name = ?";
+
+    private static final String START_SQL =
+            "INSERT INTO job_checkpoints (job_name, last_key, processed, total, started_at, updated_at, completed_at) " +
+            "VALUES (?, NULL, 0, ?, ?, ?, NULL) " +
+            "ON CONFLICT (job_name) DO UPDATE SET " +
+            "last_key = NULL, processed = 0, total = EXCLUDED.total, " +
+            "started_at = EXCLUDED.started_at, updated_at = EXCLUDED.updated_at, completed_at = NULL";
+
+    private static final String RESUME_SQL =
+            "UPDATE job_checkpoints SET total = ?, updated_at = ? WHERE job_name = ?";
+
+    private static final String ADVANCE_SQL =
+            "UPDATE job_checkpoints SET last_key = ?, processed = ?, updated_at = ? WHERE job_name = ?";
+
+    private static final String COMPLETE_SQL =
+            "UPDATE job_checkpoints SET updated_at = ?, completed_at = ? WHERE job_name = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JobCheckpointStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<JobCheckpoint> find(String jobName) {
+        return jdbcTemplate.query(FIND_SQL, (rs, rowNum) -> new JobCheckpoint(
+                rs.getString("job_name"),
+                rs.getString("last_key"),
+                rs.getLong("processed"),
+                rs.getLong("total"),
+                rs.getLong("started_at"),
+                rs.getLong("updated_at"),
+                rs.getObject("completed_at", Long.class)), jobName).stream().findFirst();
+    }
+
+    // Resumes an unfinished run unless restart is set, otherwise starts from the beginning
+    public JobCheckpoint startOrResume(String jobName, long total, boolean restart) {
+        long now = System.currentTimeMillis();
+        Optional<JobCheckpoint> existing = find(jobName);
+        if (!restart && existing.isPresent() && !existing.get().isCompleted()) {
+            jdbcTemplate.update(RESUME_SQL, total, now, jobName);
+        } else {
+            jdbcTemplate.update(START_SQL, jobName, total, now, now);
+        }
+        return find(jobName).orElseThrow();
+    }
+
+    public void advance(String jobName, String lastKey, long processed) {
+        jdbcTemplate.update(ADVANCE_SQL, lastKey, processed, System.currentTimeMillis(), jobName);
+    }
+
+    public void complete(String jobName) {
+        long now = System.currentTimeMillis();
+        jdbcTemplate.update(COMPLETE_SQL, now, now, jobName);
+    }
+}
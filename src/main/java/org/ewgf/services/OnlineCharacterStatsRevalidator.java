@@ -0,0 +1,214 @@
+package org.ewgf.services;
+
+import org.ewgf.repositories.CharacterStatsRepository;
+import org.ewgf.utils.TransactionIdUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/*
+ * Revalidates character_stats while ingestion keeps running.
+ *
+ * 1. While a run is active, marked by the row in character_stats_revalidation_capture, ingest on every
+ *    instance also appends its character_stats increments to character_stats_revalidation_log, tagged with
+ *    its transaction id. The run waits out ingest transactions that checked before the row existed.
+ * 2. Each game version is aggregated from battles into character_stats_shadow in its own repeatable read
+ *    transaction, and the snapshot it read is kept.
+ * 3. Shadow rows that disagree with character_stats are flagged, without any lock.
+ * 4. Under a short table lock, flagged rows plus every key with a late increment are set to the shadow
+ *    count plus the increments of transactions the version's snapshot did not see.
+ *
+ * A transaction is either visible in the snapshot (its battles are in the shadow) or not (its increments
+ * are added from the log), so nothing is lost or counted twice. Start one run at a time: a second run, on
+ * any instance, truncates the shadow and log tables of the first.
+ */
+@Service
+public class OnlineCharacterStatsRevalidator {
+
+    private static final Logger logger = LoggerFactory.getLogger(OnlineCharacterStatsRevalidator.class);
+
+    public static final String JOB_NAME = "character-stats-revalidation-online";
+
+    private static final String IS_CAPTURING_SQL = "SELECT EXISTS (SELECT 1 FROM character_stats_revalidation_capture)";
+
+    private static final String START_CAPTURE_SQL =
+            "INSERT INTO character_stats_revalidation_capture (id, started_at) VALUES (true, ?) " +
+            "ON CONFLICT (id) DO UPDATE SET started_at = EXCLUDED.started_at";
+
+    private static final String STOP_CAPTURE_SQL = "DELETE FROM character_stats_revalidation_capture";
+
+    private static final String LOG_INCREMENT_SQL =
+            "INSERT INTO character_stats_revalidation_log " +
+            "(player_id, character_id, game_version, wins, losses) VALUES (?, ?, ?, ?, ?)";
+
+    private static final String AGGREGATE_SQL =
+            SetBasedCharacterStatsRevalidator.AGGREGATE_SQL_TEMPLATE.formatted("character_stats_shadow");
+
+    private static final String FLAG_CHANGED_SQL = """
+        UPDATE character_stats_shadow s SET changed = true
+        WHERE NOT EXISTS (
+            SELECT 1 FROM character_stats cs
+            WHERE cs.player_id = s.player_id
+              AND cs.character_id = s.character_id
+              AND cs.game_version = s.game_version
+              AND cs.wins = s.wins
+              AND cs.losses = s.losses
+        )
+        """;
+
+    private static final String CREATE_SNAPSHOTS_SQL = """
+        CREATE TEMP TABLE revalidation_snapshots (
+            game_version integer PRIMARY KEY,
+            snapshot pg_snapshot NOT NULL
+        ) ON COMMIT DROP
+        """;
+
+    private static final String INSERT_SNAPSHOT_SQL =
+            "INSERT INTO revalidation_snapshots (game_version, snapshot) VALUES (?, ?::pg_snapshot)";
+
+    // Same conflict rule as the set-based merge: only wins and losses are corrected
+    private static final String SWAP_SQL = """
+        WITH late_increments AS (
+            SELECT l.player_id, l.character_id, l.game_version, SUM(l.wins) AS wins, SUM(l.losses) AS losses
+            FROM character_stats_revalidation_log l
+            JOIN revalidation_snapshots rs ON rs.game_version = l.game_version
+            WHERE NOT pg_visible_in_snapshot(l.xid, rs.snapshot)
+            GROUP BY l.player_id, l.character_id, l.game_version
+        ),
+        targets AS (
+            SELECT player_id, character_id, game_version FROM character_stats_shadow WHERE changed
+            UNION
+            SELECT player_id, character_id, game_version FROM late_increments
+        )
+        INSERT INTO character_stats (player_id, character_id, game_version, wins, losses, dan_rank, latest_battle)
+        SELECT t.player_id, t.character_id, t.game_version,
+               COALESCE(s.wins, 0) + COALESCE(li.wins, 0),
+               COALESCE(s.losses, 0) + COALESCE(li.losses, 0),
+               COALESCE(s.dan_rank, 0),
+               COALESCE(s.latest_battle, 0)
+        FROM targets t
+        LEFT JOIN character_stats_shadow s
+            ON s.player_id = t.player_id AND s.character_id = t.character_id AND s.game_version = t.game_version
+        LEFT JOIN late_increments li
+            ON li.player_id = t.player_id AND li.character_id = t.character_id AND li.game_version = t.game_version
+        ORDER BY t.player_id, t.character_id, t.game_version
+        ON CONFLICT (player_id, character_id, game_version) DO UPDATE SET
+            wins = EXCLUDED.wins,
+            losses = EXCLUDED.losses
+        WHERE character_stats.wins IS DISTINCT FROM EXCLUDED.wins
+           OR character_stats.losses IS DISTINCT FROM EXCLUDED.losses
+        """;
+
+    private static final String TRUNCATE_SQL = "TRUNCATE character_stats_shadow, character_stats_revalidation_log";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CharacterStatsRepository characterStatsRepository;
+    private final PlayerCharacterSummaryService playerCharacterSummaryService;
+    private final JobCheckpointStore jobCheckpointStore;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate snapshotTransactionTemplate;
+
+    public OnlineCharacterStatsRevalidator(JdbcTemplate jdbcTemplate,
+                                           CharacterStatsRepository characterStatsRepository,
+                                           PlayerCharacterSummaryService playerCharacterSummaryService,
+                                           JobCheckpointStore jobCheckpointStore,
+                                           PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.characterStatsRepository = characterStatsRepository;
+        this.playerCharacterSummaryService = playerCharacterSummaryService;
+        this.jobCheckpointStore = jobCheckpointStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Repeatable read: the whole aggregate of a version, and the recorded snapshot, must be one snapshot
+        this.snapshotTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTransactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /*
+     * Called by ingest inside its transaction, after the character_stats upsert, with the same rows:
+     * (player_id, character_id, game_version, dan_rank, latest_battle, wins, losses).
+     * The upsert gave the transaction its id before the check, which is what waitForNonCapturingIngest relies on.
+     */
+    public void recordIncrements(List<Object[]> characterStatsArgs) {
+        if (characterStatsArgs.isEmpty()) return;
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(IS_CAPTURING_SQL, Boolean.class))) return;
+
+        List<Object[]> increments = new ArrayList<>(characterStatsArgs.size());
+        for (Object[] args : characterStatsArgs) {
+            increments.add(new Object[]{args[0], args[1], args[2], args[5], args[6]});
+        }
+        jdbcTemplate.batchUpdate(LOG_INCREMENT_SQL, increments);
+    }
+
+    // Not resumable: the snapshots live in memory, so an interrupted run starts over
+    public void revalidate() {
+        List<Integer> gameVersions = new ArrayList<>(
+                characterStatsRepository.findAllGameVersions().orElse(Collections.emptyList()));
+        Collections.sort(gameVersions);
+        jobCheckpointStore.startOrResume(JOB_NAME, gameVersions.size(), true);
+        logger.info("Starting online revalidation for game versions: {}", gameVersions);
+
+        jdbcTemplate.execute(TRUNCATE_SQL);
+        jdbcTemplate.update(START_CAPTURE_SQL, System.currentTimeMillis());
+        try {
+            waitForNonCapturingIngest();
+
+            Map<Integer, String> snapshots = new LinkedHashMap<>();
+            long processed = 0;
+            for (int gameVersion : gameVersions) {
+                snapshots.put(gameVersion, buildShadow(gameVersion));
+                jobCheckpointStore.advance(JOB_NAME, String.valueOf(gameVersion), ++processed);
+            }
+
+            long startTime = System.currentTimeMillis();
+            int changed = jdbcTemplate.update(FLAG_CHANGED_SQL);
+            logger.info("Flagged {} shadow character stats that differ: {} ms",
+                    changed, (System.currentTimeMillis() - startTime));
+
+            swap(snapshots);
+        } finally {
+            jdbcTemplate.update(STOP_CAPTURE_SQL);
+        }
+
+        jdbcTemplate.execute(TRUNCATE_SQL);
+        playerCharacterSummaryService.refreshAll();
+        jobCheckpointStore.complete(JOB_NAME);
+    }
+
+    // After this, every ingest transaction either logs its increments or has already committed
+    private void waitForNonCapturingIngest() {
+        TransactionIdUtils.awaitTransactionsBefore(jdbcTemplate, TransactionIdUtils.currentXmax(jdbcTemplate));
+    }
+
+    private String buildShadow(int gameVersion) {
+        long startTime = System.currentTimeMillis();
+        String[] snapshot = new String[1];
+        int rows = Objects.requireNonNull(snapshotTransactionTemplate.execute(status -> {
+            // the first query fixes the transaction snapshot, which the aggregate then reads
+            snapshot[0] = jdbcTemplate.queryForObject("SELECT pg_current_snapshot()::text", String.class);
+            return jdbcTemplate.update(AGGREGATE_SQL, gameVersion, gameVersion);
+        }));
+        logger.info("Built {} shadow character stats for game version {}: {} ms",
+                rows, gameVersion, (System.currentTimeMillis() - startTime));
+        return snapshot[0];
+    }
+
+    private void swap(Map<Integer, String> snapshots) {
+        long startTime = System.currentTimeMillis();
+        int corrected = Objects.requireNonNull(transactionTemplate.execute(status -> {
+            // waits for in-flight ingest upserts, and holds new ones back until the merge commits
+            jdbcTemplate.execute("LOCK TABLE character_stats IN SHARE ROW EXCLUSIVE MODE");
+            jdbcTemplate.execute(CREATE_SNAPSHOTS_SQL);
+            List<Object[]> snapshotArgs = new ArrayList<>(snapshots.size());
+            snapshots.forEach((gameVersion, snapshot) -> snapshotArgs.add(new Object[]{gameVersion, snapshot}));
+            jdbcTemplate.batchUpdate(INSERT_SNAPSHOT_SQL, snapshotArgs);
+            return jdbcTemplate.update(SWAP_SQL);
+        }));
+        logger.info("Swapped in {} corrected character stats: {} ms", corrected, (System.currentTimeMillis() - startTime));
+    }
+}
@@ -0,0 +1,122 @@
+package org.ewgf.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.ewgf.configuration.RabbitMQConfig;
+import org.ewgf.models.Battle;
+import org.ewgf.repositories.BattleRepository;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.ewgf.utils.Constants.TIMESTAMP_HEADER;
+
+/*
+ * Reconciliation of battles whose two players belong to different partitions. Each partition applies
+ * its own player's side, so when one partition's delivery is lost or keeps failing the battle is left
+ * half applied: one claim in battle_player_claims instead of two. This job finds those battles among
+ * recent claims and sends them again through the router, to the partition of each player. The side that
+ * is already claimed is skipped there, so only the missing half is applied, by its own partition.
+ * Claims older than the lookback are pruned afterwards: they are outside every later scan, and a late
+ * duplicate of such a battle is not re-applied because its battle row already exists.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "ingestion.partitioning.enabled", havingValue = "true")
+public class PartitionReconciliationService {
+
+    private final BattleRepository battleRepository;
+    private final BattlePartitionRouter battlePartitionRouter;
+    private final RabbitTemplate rabbitTemplate;
+    private final RabbitMQConfig rabbitMQConfig;
+    private final JdbcTemplate jdbcTemplate;
+    private final long graceSeconds;
+    private final long lookbackSeconds;
+    private final int maxBattles;
+    private final int pruneBatchSize;
+    private final int maxPruneBatches;
+    private final Counter resent;
+
+    public PartitionReconciliationService(
+            BattleRepository battleRepository,
+            BattlePartitionRouter battlePartitionRouter,
+            RabbitTemplate rabbitTemplate,
+            RabbitMQConfig rabbitMQConfig,
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${ingestion.partitioning.reconcile.grace-seconds:600}") long graceSeconds,
+            @Value("${ingestion.partitioning.reconcile.lookback-seconds:86400}") long lookbackSeconds,
+            @Value("${ingestion.partitioning.reconcile.max-battles:5000}") int maxBattles,
+            @Value("${ingestion.partitioning.reconcile.prune-batch-size:10000}") int pruneBatchSize,
+            @Value("${ingestion.partitioning.reconcile.max-prune-batches:100}") int maxPruneBatches) {
+        this.battleRepository = battleRepository;
+        this.battlePartitionRouter = battlePartitionRouter;
+        this.rabbitTemplate = rabbitTemplate;
+        this.rabbitMQConfig = rabbitMQConfig;
+        this.jdbcTemplate = jdbcTemplate;
+        this.graceSeconds = graceSeconds;
+        this.lookbackSeconds = lookbackSeconds;
+        this.maxBattles = maxBattles;
+        this.pruneBatchSize = pruneBatchSize;
+        this.maxPruneBatches = maxPruneBatches;
+        this.resent = Counter.builder("ewgf.ingestion.partition.reconciled")
+                .description("Half applied battles sent to their partitions again")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${ingestion.partitioning.reconcile.interval-ms:300000}",
+            fixedDelayString = "${ingestion.partitioning.reconcile.interval-ms:300000}")
+    public void reconcileHalfAppliedBattles() {
+        try {
+            // claims younger than the grace period may still have their other half waiting on a queue
+            long to = Instant.now().getEpochSecond() - graceSeconds;
+            long from = to - lookbackSeconds;
+            List<Battle> battles = battleRepository.findHalfClaimedBattles(from, to, maxBattles);
+            if (!battles.isEmpty()) resend(battles);
+            pruneClaimsBefore(from);
+        } catch (Exception e) {
+            log.error("Partition reconciliation failed: ", e);
+        }
+    }
+
+    private void resend(List<Battle> battles) {
+        String timestamp = Instant.now() + " (reconcile)";
+        battlePartitionRouter.partition(battles).forEach((partition, partitionBattles) ->
+                rabbitTemplate.convertAndSend(
+                        rabbitMQConfig.getExchangeName(),
+                        BattlePartitionRouter.routingKey(partition),
+                        partitionBattles,
+                        msg -> {
+                            msg.getMessageProperties().setHeader(TIMESTAMP_HEADER, timestamp);
+                            return msg;
+                        }));
+        resent.increment(battles.size());
+        log.warn("Sent {} half applied battles to their partitions again", battles.size());
+    }
+
+    /*
+     * Deletes claims made before the cutoff in batches on the claimed_at index, at most maxPruneBatches
+     * per run so a large backlog is spread over several runs instead of one long scan.
+     */
+    int pruneClaimsBefore(long cutoff) {
+        String sql =
+                "DELETE FROM battle_player_claims WHERE ctid IN (" +
+                "SELECT ctid FROM battle_player_claims WHERE claimed_at < ? LIMIT ?)";
+
+        int pruned = 0;
+        for (int batch = 0; batch < maxPruneBatches; batch++) {
+            int deleted = jdbcTemplate.update(sql, cutoff, pruneBatchSize);
+            pruned += deleted;
+            if (deleted < pruneBatchSize) break;
+        }
+        if (pruned > 0) log.info("Pruned {} partition claims made before {}", pruned, cutoff);
+        return pruned;
+    }
+}
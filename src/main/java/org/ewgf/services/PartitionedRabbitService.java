@@ -0,0 +1,51 @@
+package org.ewgf.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.ewgf.models.Battle;
+import org.springframework.amqp.core.Message;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import static org.ewgf.utils.Constants.TIMESTAMP_HEADER;
+
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "ingestion.partitioning.enabled", havingValue = "true")
+public class PartitionedRabbitService {
+
+    private static final TypeReference<List<Battle>> BATTLE_LIST_TYPE = new TypeReference<>() {};
+
+    private final BattleProcessingService battleProcessingService;
+    private final BattlePartitionRouter battlePartitionRouter;
+    private final ObjectMapper objectMapper;
+
+    public PartitionedRabbitService(BattleProcessingService battleProcessingService,
+                                    BattlePartitionRouter battlePartitionRouter,
+                                    ObjectMapper objectMapper) {
+        this.battleProcessingService = battleProcessingService;
+        this.battlePartitionRouter = battlePartitionRouter;
+        this.objectMapper = objectMapper;
+    }
+
+    public void receivePartitionMessage(String partition, Message message) {
+        List<Battle> battles;
+        try {
+            battles = objectMapper.readValue(message.getBody(), BATTLE_LIST_TYPE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not deserialize battles for partition " + partition, e);
+        }
+
+        log.info("Received {} battles on partition {}, timestamp: {}", battles.size(), partition,
+                message.getMessageProperties().getHeader(TIMESTAMP_HEADER));
+        long start = System.currentTimeMillis();
+        battleProcessingService.processPartitionBattles(battles,
+                playerId -> battlePartitionRouter.writesPlayer(partition, playerId));
+        log.info("Partition {} operation time: {} ms", partition, System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,262 @@
+package org.ewgf.services;
+
+import org.ewgf.dtos.AutocompleteSuggestionDTO;
+import org.ewgf.models.Player;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/*
+ * Prefix index over folded player names and polaris ids, so typeahead never touches the database.
+ * The bulk of the keys live in an immutable sorted array searched with binary search; players upserted
+ * since the last compaction sit in a small skip list. Both point at entries, and an entry only counts
+ * while it is still the player's current one, so renamed players do not linger under their old name.
+ */
+@Component
+public class PlayerAutocompleteIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlayerAutocompleteIndex.class);
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private static final String LOAD_PLAYERS_SQL =
+            "SELECT player_id, name, polaris_id, region_id, latest_battle FROM players";
+
+    private record Entry(String playerId, String name, String polarisId, Integer regionId, long latestBattle) {}
+
+    private record Snapshot(String[] keys, Entry[] entries) {}
+
+    private final boolean enabled;
+    private final int fetchSize;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<String, Entry> entriesByPlayerId = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Entry> recentEntries = new ConcurrentSkipListMap<>();
+    private volatile Snapshot snapshot = new Snapshot(new String[0], new Entry[0]);
+    private volatile boolean ready;
+
+    public PlayerAutocompleteIndex(@Value("${player.autocomplete.enabled:true}") boolean enabled,
+                                   @Value("${player.autocomplete.fetch-size:10000}") int fetchSize,
+                                   JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager) {
+        this.enabled = enabled;
+        this.fetchSize = fetchSize;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Async("statisticsThreadExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildFromDatabase() {
+        if (!enabled) return;
+        long startTime = System.currentTimeMillis();
+
+        JdbcTemplate streamingJdbcTemplate = new JdbcTemplate(Objects.requireNonNull(jdbcTemplate.getDataSource()));
+        streamingJdbcTemplate.setFetchSize(fetchSize);
+        // the cursor only streams inside a transaction
+        transactionTemplate.executeWithoutResult(status ->
+                streamingJdbcTemplate.query(LOAD_PLAYERS_SQL, (RowCallbackHandler) rs -> {
+                    long latestBattle = rs.getLong("latest_battle");
+                    int regionId = rs.getInt("region_id");
+                    upsert(new Entry(
+                            rs.getString("player_id"),
+                            rs.getString("name"),
+                            rs.getString("polaris_id"),
+                            rs.wasNull() ? null : regionId,
+                            latestBattle), false);
+                }));
+
+        compact();
+        ready = true;
+        logger.info("Built autocomplete index with {} players: {} ms",
+                entriesByPlayerId.size(), (System.currentTimeMillis() - startTime));
+    }
+
+    // Mirrors the players upsert; applied once the ingest transaction commits
+    public void onPlayersUpserted(Collection<Player> players) {
+        if (!enabled || players.isEmpty()) return;
+        List<Entry> upserted = new ArrayList<>(players.size());
+        for (Player player : players) {
+            upserted.add(new Entry(player.getPlayerId(), player.getName(), player.getPolarisId(),
+                    player.getRegionId(), player.getLatestBattle() == null ? 0 : player.getLatestBattle()));
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    upserted.forEach(entry -> upsert(entry, true));
+                }
+            });
+        } else {
+            upserted.forEach(entry -> upsert(entry, true));
+        }
+    }
+
+    public List<AutocompleteSuggestionDTO> suggest(String query, int limit) {
+        if (!enabled || !ready) return Collections.emptyList();
+        String prefix = fold(query);
+        if (prefix.isEmpty()) return Collections.emptyList();
+        String polarisPrefix = prefix.replace("-", "");
+
+        // same ranking as the SQL search: exact name, then name prefix, then shorter names
+        Comparator<Entry> ranking = Comparator.comparingInt((Entry entry) -> rank(entry, prefix))
+                .thenComparingInt(entry -> entry.name() == null ? Integer.MAX_VALUE : entry.name().length())
+                .thenComparing(entry -> fold(entry.name()))
+                .thenComparing(Entry::playerId);
+        // every match is ranked, the heap keeps the best `limit` with the worst of them at its head
+        Candidates candidates = new Candidates(limit, ranking);
+        collectFromRecent(prefix, candidates);
+        collectFromSnapshot(prefix, candidates);
+        if (!polarisPrefix.isEmpty() && !polarisPrefix.equals(prefix)) {
+            collectFromRecent(polarisPrefix, candidates);
+            collectFromSnapshot(polarisPrefix, candidates);
+        }
+
+        return candidates.ranked().stream()
+                .map(entry -> new AutocompleteSuggestionDTO(entry.name(), entry.polarisId(), entry.regionId()))
+                .toList();
+    }
+
+    // Folds the recently upserted players into the sorted arrays
+    @Scheduled(fixedDelayString = "${player.autocomplete.compaction-interval-ms:300000}")
+    public void compactIfNeeded() {
+        if (!enabled || !ready || recentEntries.isEmpty()) return;
+        compact();
+    }
+
+    private synchronized void compact() {
+        long startTime = System.currentTimeMillis();
+        List<Map.Entry<String, Entry>> keyed = new ArrayList<>(entriesByPlayerId.size() * 2);
+        // entries upserted while this runs stay in the skip list until the next compaction
+        Map<String, Entry> compacted = new HashMap<>(recentEntries);
+        for (Entry entry : entriesByPlayerId.values()) {
+            for (String key : keysOf(entry)) {
+                keyed.add(Map.entry(key, entry));
+            }
+        }
+        keyed.sort(Map.Entry.comparingByKey());
+
+        String[] keys = new String[keyed.size()];
+        Entry[] entries = new Entry[keyed.size()];
+        for (int i = 0; i < keyed.size(); i++) {
+            keys[i] = keyed.get(i).getKey();
+            entries[i] = keyed.get(i).getValue();
+        }
+        snapshot = new Snapshot(keys, entries);
+        // a key upserted again meanwhile maps to a newer entry, which the next compaction picks up
+        compacted.forEach((key, entry) -> recentEntries.remove(key, entry));
+        logger.info("Compacted autocomplete index to {} keys: {} ms", keys.length, (System.currentTimeMillis() - startTime));
+    }
+
+    private void upsert(Entry entry, boolean trackRecent) {
+        Entry merged = entriesByPlayerId.merge(entry.playerId(), entry, (current, updated) ->
+                // same rule as the players upsert: only a newer battle changes name and region
+                updated.latestBattle() > current.latestBattle() ? updated : current);
+        if (trackRecent && merged == entry) {
+            for (String key : keysOf(entry)) {
+                recentEntries.put(key + '\u0000' + entry.playerId(), entry);
+            }
+        }
+    }
+
+    private void collectFromSnapshot(String prefix, Candidates candidates) {
+        Snapshot current = snapshot;
+        for (int i = lowerBound(current.keys(), prefix); i < current.keys().length; i++) {
+            if (!current.keys()[i].startsWith(prefix)) break;
+            addIfCurrent(current.entries()[i], candidates);
+        }
+    }
+
+    // First index whose key is >= prefix. Names repeat, and Arrays.binarySearch may land on any of the equal keys
+    private static int lowerBound(String[] keys, String prefix) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(prefix) < 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private void collectFromRecent(String prefix, Candidates candidates) {
+        for (Entry entry : recentEntries.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+            addIfCurrent(entry, candidates);
+        }
+    }
+
+    private void addIfCurrent(Entry entry, Candidates candidates) {
+        if (entriesByPlayerId.get(entry.playerId()) == entry) {
+            candidates.offer(entry);
+        }
+    }
+
+    // The best `limit` distinct players seen so far
+    private static final class Candidates {
+        private final int limit;
+        private final Comparator<Entry> ranking;
+        private final PriorityQueue<Entry> worstFirst;
+        private final Set<String> seenPlayerIds = new HashSet<>();
+
+        Candidates(int limit, Comparator<Entry> ranking) {
+            this.limit = limit;
+            this.ranking = ranking;
+            this.worstFirst = new PriorityQueue<>(limit + 1, ranking.reversed());
+        }
+
+        void offer(Entry entry) {
+            // a player matches under both keys, and in the skip list and the snapshot
+            if (!seenPlayerIds.add(entry.playerId())) return;
+            worstFirst.offer(entry);
+            if (worstFirst.size() > limit) worstFirst.poll();
+        }
+
+        List<Entry> ranked() {
+            List<Entry> ranked = new ArrayList<>(worstFirst);
+            ranked.sort(ranking);
+            return ranked;
+        }
+    }
+
+    private static int rank(Entry entry, String prefix) {
+        String name = fold(entry.name());
+        if (name.equals(prefix)) return 0;
+        if (name.startsWith(prefix)) return 1;
+        return 20;
+    }
+
+    private static List<String> keysOf(Entry entry) {
+        List<String> keys = new ArrayList<>(2);
+        String name = fold(entry.name());
+        if (!name.isEmpty()) keys.add(name);
+        String polarisId = fold(entry.polarisId()).replace("-", "");
+        if (!polarisId.isEmpty() && !polarisId.equals(name)) keys.add(polarisId);
+        return keys;
+    }
+
+    // lower case without diacritics, so "Éclair" is found by "ecl"
+    private static String fold(String value) {
+        if (value == null) return "";
+        String decomposed = Normalizer.normalize(value.trim(), Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+}
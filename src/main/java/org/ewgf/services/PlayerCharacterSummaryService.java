@@ -0,0 +1,99 @@
+package org.ewgf.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/*
+ * Keeps the main and most recent character columns on players in line with character_stats,
+ * so search, metadata and the recently active list never have to load a player's character stats.
+ * Main character: highest dan rank reached, ties broken by most matches across all versions.
+ * Recent character: the character_stats row with the latest battle.
+ */
+@Service
+public class PlayerCharacterSummaryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlayerCharacterSummaryService.class);
+
+    private static final String REFRESH_SQL = """
+        WITH touched AS (
+            SELECT unnest(?::varchar[]) AS player_id
+        ),
+        per_character AS (
+            SELECT cs.player_id, cs.character_id,
+                   MAX(cs.dan_rank) AS max_dan_rank,
+                   SUM(COALESCE(cs.wins, 0) + COALESCE(cs.losses, 0)) AS matches
+            FROM character_stats cs
+            JOIN touched t ON t.player_id = cs.player_id
+            GROUP BY cs.player_id, cs.character_id
+        ),
+        main AS (
+            SELECT DISTINCT ON (player_id) player_id, character_id, max_dan_rank
+            FROM per_character
+            ORDER BY player_id, max_dan_rank DESC, matches DESC
+        ),
+        recent AS (
+            SELECT DISTINCT ON (cs.player_id) cs.player_id, cs.character_id, cs.dan_rank
+            FROM character_stats cs
+            JOIN touched t ON t.player_id = cs.player_id
+            ORDER BY cs.player_id, cs.latest_battle DESC NULLS LAST
+        )
+        UPDATE players p SET
+            main_character_id = main.character_id,
+            main_dan_rank = main.max_dan_rank,
+            recent_character_id = recent.character_id,
+            recent_dan_rank = recent.dan_rank
+        FROM main
+        JOIN recent ON recent.player_id = main.player_id
+        WHERE p.player_id = main.player_id
+        """;
+
+    private static final String NEXT_PLAYER_IDS_SQL =
+            "SELECT player_id FROM players WHERE player_id > ? ORDER BY player_id LIMIT ?";
+
+    private static final int REFRESH_ALL_BATCH_SIZE = 10000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public PlayerCharacterSummaryService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Runs in the caller's transaction, right after its character_stats writes
+    public void refresh(Collection<String> playerIds) {
+        if (playerIds.isEmpty()) return;
+        long startTime = System.currentTimeMillis();
+
+        // players are already locked in this order by the preceding upserts
+        String[] sortedIds = playerIds.stream().distinct().sorted().toArray(String[]::new);
+        int updated = jdbcTemplate.update(REFRESH_SQL, ps ->
+                ps.setArray(1, ps.getConnection().createArrayOf("varchar", sortedIds)));
+
+        logger.info("Player character summary update: {} ms, Updated Players: {}",
+                (System.currentTimeMillis() - startTime), updated);
+    }
+
+    // Walks every player in key order, one short transaction per batch, after bulk character_stats rewrites
+    public void refreshAll() {
+        long startTime = System.currentTimeMillis();
+        String lastPlayerId = "";
+        int refreshed = 0;
+        while (true) {
+            List<String> playerIds = jdbcTemplate.queryForList(NEXT_PLAYER_IDS_SQL, String.class,
+                    lastPlayerId, REFRESH_ALL_BATCH_SIZE);
+            if (playerIds.isEmpty()) break;
+            transactionTemplate.executeWithoutResult(status -> refresh(playerIds));
+            lastPlayerId = playerIds.get(playerIds.size() - 1);
+            refreshed += playerIds.size();
+        }
+        logger.info("Refreshed character summary of {} players: {} ms",
+                refreshed, (System.currentTimeMillis() - startTime));
+    }
+}
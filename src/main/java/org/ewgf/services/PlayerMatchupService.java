@@ -0,0 +1,227 @@
+package org.ewgf.services;
+
+import org.ewgf.models.Battle;
+import org.ewgf.repositories.CharacterStatsRepository;
+import org.ewgf.utils.TransactionIdUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiPredicate;
+
+import static org.ewgf.models.BattleType.RANKED_BATTLE;
+
+/*
+ * Maintains player_matchups: ranked wins and losses per (player, character, opponent character, game version).
+ * Ingest adds each batch's results, so a profile reads a handful of rows instead of every battle the player had.
+ * Until it is enabled nothing is written at ingest and profiles aggregate the player's ranked battles instead.
+ * Once migrations/009_player_matchups.sql has run, /admin/backfillPlayerMatchups turns ingest writes on,
+ * rebuilds the table and then serves profiles from it. Completion is kept in job_checkpoints, so later starts
+ * come up enabled; player.matchups.enabled forces it on without a backfill.
+ */
+@Service
+public class PlayerMatchupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlayerMatchupService.class);
+
+    public static final String BACKFILL_JOB_NAME = "player-matchups-backfill";
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO player_matchups " +
+            "(player_id, character_id, opponent_character_id, game_version, wins, losses) " +
+            "VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (player_id, character_id, opponent_character_id, game_version) DO UPDATE SET " +
+            "wins = player_matchups.wins + EXCLUDED.wins, " +
+            "losses = player_matchups.losses + EXCLUDED.losses";
+
+    private static final String FIND_BY_PLAYER_SQL =
+            "SELECT character_id, opponent_character_id, SUM(wins) AS wins, SUM(losses) AS losses " +
+            "FROM player_matchups WHERE player_id = ? " +
+            "GROUP BY character_id, opponent_character_id";
+
+    // Same rows as player_matchups would hold for the player, summed over game versions
+    private static final String FIND_FROM_BATTLES_SQL =
+            "SELECT character_id, opponent_character_id, SUM(win) AS wins, SUM(loss) AS losses FROM (" +
+            "  SELECT player1_character_id::varchar AS character_id, player2_character_id::varchar AS opponent_character_id, " +
+            "    (winner = 1)::int AS win, (winner <> 1)::int AS loss " +
+            "  FROM battles WHERE player1_id = ? AND battle_type = ? " +
+            "  UNION ALL " +
+            "  SELECT player2_character_id::varchar, player1_character_id::varchar, " +
+            "    (winner = 2)::int, (winner <> 2)::int " +
+            "  FROM battles WHERE player2_id = ? AND battle_type = ? " +
+            ") results " +
+            "GROUP BY character_id, opponent_character_id";
+
+    private static final String BACKFILL_SQL =
+            "INSERT INTO player_matchups " +
+            "(player_id, character_id, opponent_character_id, game_version, wins, losses) " +
+            "SELECT player_id, character_id, opponent_character_id, game_version, SUM(win), SUM(loss) FROM (" +
+            "  SELECT player1_id AS player_id, " +
+            "    player1_character_id::varchar AS character_id, player2_character_id::varchar AS opponent_character_id, " +
+            "    game_version, (winner = 1)::int AS win, (winner <> 1)::int AS loss " +
+            "  FROM battles WHERE battle_type = ? AND game_version = ? " +
+            "  UNION ALL " +
+            "  SELECT player2_id, " +
+            "    player2_character_id::varchar, player1_character_id::varchar, " +
+            "    game_version, (winner = 2)::int, (winner <> 2)::int " +
+            "  FROM battles WHERE battle_type = ? AND game_version = ? " +
+            ") results " +
+            "GROUP BY player_id, character_id, opponent_character_id, game_version " +
+            "ON CONFLICT (player_id, character_id, opponent_character_id, game_version) DO UPDATE SET " +
+            "wins = EXCLUDED.wins, " +
+            "losses = EXCLUDED.losses";
+
+    public record MatchupKey(String playerId, String characterId, String opponentCharacterId, int gameVersion) {}
+
+    public record MatchupRecord(String characterId, String opponentCharacterId, int wins, int losses) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CharacterStatsRepository characterStatsRepository;
+    private final JobCheckpointStore jobCheckpointStore;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicBoolean isBackfilling = new AtomicBoolean(false);
+
+    // Ingest writes are turned on before the backfill rebuilds the table, profile reads only after it
+    private volatile boolean recording;
+    private volatile boolean serving;
+
+    public PlayerMatchupService(JdbcTemplate jdbcTemplate,
+                                CharacterStatsRepository characterStatsRepository,
+                                JobCheckpointStore jobCheckpointStore,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${player.matchups.enabled:false}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.characterStatsRepository = characterStatsRepository;
+        this.jobCheckpointStore = jobCheckpointStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        boolean backfilled = enabled || jobCheckpointStore.find(BACKFILL_JOB_NAME)
+                .map(JobCheckpointStore.JobCheckpoint::isCompleted)
+                .orElse(false);
+        this.recording = backfilled;
+        this.serving = backfilled;
+    }
+
+    public boolean isEnabled() {
+        return recording;
+    }
+
+    // Runs inside the ingest transaction, after the character_stats upsert
+    public void recordMatchups(List<Battle> rankedBattles) {
+        recordMatchups(rankedBattles, (battle, playerNumber) -> true);
+    }
+
+    // Only the sides the filter accepts, for a partition consumer that owns one of the two players
+    public void recordMatchups(List<Battle> rankedBattles, BiPredicate<Battle, Integer> sides) {
+        if (rankedBattles.isEmpty()) return;
+        long startTime = System.currentTimeMillis();
+
+        Map<MatchupKey, int[]> results = new HashMap<>();
+        for (Battle battle : rankedBattles) {
+            String player1Character = String.valueOf(battle.getPlayer1CharacterId());
+            String player2Character = String.valueOf(battle.getPlayer2CharacterId());
+            if (sides.test(battle, 1)) {
+                addResult(results, new MatchupKey(battle.getPlayer1UserId(), player1Character, player2Character,
+                        battle.getGameVersion()), battle.getWinner() == 1);
+            }
+            if (sides.test(battle, 2)) {
+                addResult(results, new MatchupKey(battle.getPlayer2UserId(), player2Character, player1Character,
+                        battle.getGameVersion()), battle.getWinner() == 2);
+            }
+        }
+
+        if (results.isEmpty()) return;
+
+        List<Object[]> batchArgs = new ArrayList<>(results.size());
+        for (Map.Entry<MatchupKey, int[]> entry : results.entrySet()) {
+            MatchupKey key = entry.getKey();
+            batchArgs.add(new Object[]{
+                    key.playerId(),
+                    key.characterId(),
+                    key.opponentCharacterId(),
+                    key.gameVersion(),
+                    entry.getValue()[0],
+                    entry.getValue()[1]
+            });
+        }
+
+        // Same ordering as the character_stats upsert, to keep lock acquisition consistent
+        batchArgs.sort(Comparator.comparing((Object[] args) -> (String) args[0])
+                .thenComparing(args -> (String) args[1])
+                .thenComparing(args -> (String) args[2])
+                .thenComparing(args -> (Integer) args[3]));
+
+        jdbcTemplate.batchUpdate(UPSERT_SQL, batchArgs);
+
+        logger.info("PlayerMatchups Bulk Upsert: {} ms, Total Processed Matchups: {}",
+                (System.currentTimeMillis() - startTime), batchArgs.size());
+    }
+
+    // Summed over game versions, which is what the profile shows
+    public List<MatchupRecord> findMatchups(String playerId) {
+        RowMapper<MatchupRecord> rowMapper = (rs, rowNum) -> new MatchupRecord(
+                rs.getString("character_id"),
+                rs.getString("opponent_character_id"),
+                rs.getInt("wins"),
+                rs.getInt("losses"));
+
+        if (serving) return jdbcTemplate.query(FIND_BY_PLAYER_SQL, rowMapper, playerId);
+
+        int ranked = RANKED_BATTLE.getBattleCode();
+        return jdbcTemplate.query(FIND_FROM_BATTLES_SQL, rowMapper, playerId, ranked, playerId, ranked);
+    }
+
+    /*
+     * Rebuilds player_matchups from battles, one game version per transaction. The table lock blocks
+     * ingest upserts while a version is recomputed, so no increment is lost or counted twice: batches
+     * committed before the lock are read from battles, later ones add on top of the rebuilt rows.
+     * On the first run ingest starts writing before the rebuild, and profiles switch over once it is done.
+     */
+    public void backfill() {
+        if (!isBackfilling.compareAndSet(false, true)) {
+            logger.info("Player matchup backfill already in progress.");
+            return;
+        }
+
+        try {
+            List<Integer> gameVersions = characterStatsRepository.findAllGameVersions().orElse(Collections.emptyList());
+            if (!serving) {
+                jobCheckpointStore.startOrResume(BACKFILL_JOB_NAME, gameVersions.size(), true);
+                recording = true;
+                // a batch that checked isEnabled() before the switch wrote no matchups, the rebuild reads its battles
+                TransactionIdUtils.awaitTransactionsBefore(jdbcTemplate, TransactionIdUtils.currentXmax(jdbcTemplate));
+            }
+
+            for (int gameVersion : gameVersions) {
+                long startTime = System.currentTimeMillis();
+                Integer rows = transactionTemplate.execute(status -> {
+                    jdbcTemplate.execute("LOCK TABLE player_matchups IN SHARE ROW EXCLUSIVE MODE");
+                    int ranked = RANKED_BATTLE.getBattleCode();
+                    return jdbcTemplate.update(BACKFILL_SQL, ranked, gameVersion, ranked, gameVersion);
+                });
+                logger.info("Backfilled {} player matchups for game version {}: {} ms",
+                        rows, gameVersion, (System.currentTimeMillis() - startTime));
+            }
+
+            if (!serving) {
+                jobCheckpointStore.complete(BACKFILL_JOB_NAME);
+                serving = true;
+                logger.info("Player matchups enabled, profiles now read them from player_matchups");
+            }
+        } finally {
+            isBackfilling.set(false);
+        }
+    }
+
+    private static void addResult(Map<MatchupKey, int[]> results, MatchupKey key, boolean won) {
+        int[] counts = results.computeIfAbsent(key, k -> new int[2]);
+        if (won) counts[0]++;
+        else counts[1]++;
+    }
+}
@@ -0,0 +1,203 @@
+package org.ewgf.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.ewgf.dtos.PlayerDTO;
+import org.ewgf.dtos.PlayerMatchupSummaryDTO;
+import org.ewgf.events.CharacterStatsRevalidatedEvent;
+import org.ewgf.events.PlayersUpdatedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+
+/*
+ * LRU cache of built player profiles keyed by polaris id, bounded by an estimate of their size in memory.
+ * Entries are dropped when an ingest batch touching the player commits, so a profile is never staler
+ * than the last committed batch. Writes that bypass ingest (a character stats revalidation) clear the
+ * whole cache when they finish, and every entry expires after ttlMs as a backstop for anything else.
+ */
+@Component
+public class PlayerProfileCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlayerProfileCache.class);
+
+    // rough per-object footprints, only used to bound the cache
+    private static final long BASE_PROFILE_BYTES = 1024;
+    private static final long BATTLE_BYTES = 512;
+    private static final long CHARACTER_BYTES = 256;
+    private static final long MATCHUP_BYTES = 128;
+    private static final int MAX_TRACKED_INVALIDATIONS = 100_000;
+
+    private record Entry(String playerId, PlayerDTO profile, long weight, long expiresAt) {}
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private final long ttlMs;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, String> polarisIdsByPlayerId = new HashMap<>();
+    private long totalWeight;
+    /*
+     * A profile loaded before its player was invalidated must not be cached. Every invalidation
+     * bumps the generation and remembers it per player; the map is reset when it grows too large,
+     * after which profiles loaded before the reset are simply not cached.
+     */
+    private long invalidationGeneration;
+    private long oldestTrackedGeneration;
+    private final Map<String, Long> invalidatedAtGeneration = new HashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter invalidations;
+    private final Counter expirations;
+    private final Counter revalidationClears;
+
+    public PlayerProfileCache(@Value("${player.profile-cache.enabled:true}") boolean enabled,
+                              @Value("${player.profile-cache.max-bytes:67108864}") long maxBytes,
+                              @Value("${player.profile-cache.ttl-ms:600000}") long ttlMs,
+                              MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxBytes = maxBytes;
+        this.ttlMs = ttlMs;
+        this.hits = Counter.builder("ewgf.player.profile.cache.requests")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("ewgf.player.profile.cache.requests")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.sizeEvictions = Counter.builder("ewgf.player.profile.cache.evictions")
+                .tag("cause", "size")
+                .register(meterRegistry);
+        this.invalidations = Counter.builder("ewgf.player.profile.cache.evictions")
+                .tag("cause", "ingest")
+                .register(meterRegistry);
+        this.expirations = Counter.builder("ewgf.player.profile.cache.evictions")
+                .tag("cause", "ttl")
+                .register(meterRegistry);
+        this.revalidationClears = Counter.builder("ewgf.player.profile.cache.evictions")
+                .tag("cause", "revalidation")
+                .register(meterRegistry);
+        Gauge.builder("ewgf.player.profile.cache.size", this, PlayerProfileCache::size)
+                .description("Cached player profiles")
+                .register(meterRegistry);
+        Gauge.builder("ewgf.player.profile.cache.memory", this, PlayerProfileCache::weight)
+                .description("Estimated memory held by cached player profiles")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("ewgf.player.profile.cache.hit.ratio", this, PlayerProfileCache::hitRatio)
+                .register(meterRegistry);
+    }
+
+    public synchronized Optional<PlayerDTO> get(String polarisId) {
+        if (!enabled) return Optional.empty();
+        Entry entry = entries.get(polarisId);
+        if (entry != null && entry.expiresAt() <= System.currentTimeMillis()) {
+            remove(polarisId);
+            expirations.increment();
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(entry.profile());
+    }
+
+    // Read before loading a profile and pass it to put, so a concurrent invalidation is not lost
+    public synchronized long currentGeneration() {
+        return invalidationGeneration;
+    }
+
+    public synchronized void put(String playerId, PlayerDTO profile, long generation) {
+        if (!enabled || generation < oldestTrackedGeneration) return;
+        if (invalidatedAtGeneration.getOrDefault(playerId, Long.MIN_VALUE) > generation) return;
+
+        long weight = estimateWeight(profile);
+        if (weight > maxBytes) return;
+
+        remove(profile.getPolarisId());
+        entries.put(profile.getPolarisId(), new Entry(playerId, profile, weight, System.currentTimeMillis() + ttlMs));
+        polarisIdsByPlayerId.put(playerId, profile.getPolarisId());
+        totalWeight += weight;
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (totalWeight > maxBytes && eldest.hasNext()) {
+            Entry evicted = eldest.next().getValue();
+            eldest.remove();
+            polarisIdsByPlayerId.remove(evicted.playerId());
+            totalWeight -= evicted.weight();
+            sizeEvictions.increment();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onPlayersUpdated(PlayersUpdatedEvent event) {
+        invalidationGeneration++;
+        if (invalidatedAtGeneration.size() > MAX_TRACKED_INVALIDATIONS) {
+            invalidatedAtGeneration.clear();
+            oldestTrackedGeneration = invalidationGeneration;
+        }
+
+        int removed = 0;
+        for (String playerId : event.getPlayerIds()) {
+            invalidatedAtGeneration.put(playerId, invalidationGeneration);
+            String polarisId = polarisIdsByPlayerId.get(playerId);
+            if (polarisId != null && remove(polarisId)) removed++;
+        }
+        if (removed > 0) {
+            invalidations.increment(removed);
+            logger.debug("Evicted {} player profiles after ingest", removed);
+        }
+    }
+
+    // Loads that started before the clear are not cached either, same as after a reset of the tracked generations
+    @EventListener
+    public synchronized void onCharacterStatsRevalidated(CharacterStatsRevalidatedEvent event) {
+        invalidationGeneration++;
+        invalidatedAtGeneration.clear();
+        oldestTrackedGeneration = invalidationGeneration;
+
+        int removed = entries.size();
+        entries.clear();
+        polarisIdsByPlayerId.clear();
+        totalWeight = 0;
+        revalidationClears.increment(removed);
+        logger.info("Cleared {} player profiles after a {} character stats revalidation", removed, event.getMode());
+    }
+
+    private boolean remove(String polarisId) {
+        Entry entry = entries.remove(polarisId);
+        if (entry == null) return false;
+        polarisIdsByPlayerId.remove(entry.playerId());
+        totalWeight -= entry.weight();
+        return true;
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized long weight() {
+        return totalWeight;
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    private static long estimateWeight(PlayerDTO profile) {
+        long weight = BASE_PROFILE_BYTES + (long) profile.getBattles().size() * BATTLE_BYTES;
+        for (PlayerMatchupSummaryDTO character : profile.getPlayedCharacters().values()) {
+            weight += CHARACTER_BYTES + (long) character.getMatchups().size() * MATCHUP_BYTES;
+        }
+        return weight;
+    }
+}
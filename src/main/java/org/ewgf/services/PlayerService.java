@@ -2,16 +2,22 @@ package org.ewgf.services;
 
 import org.apache.coyote.BadRequestException;
 import org.ewgf.dtos.*;
+import org.ewgf.interfaces.PlayerSummaryProjection;
 import org.ewgf.models.*;
 import org.ewgf.repositories.BattleRepository;
 import org.ewgf.repositories.PlayerRepository;
 import org.ewgf.utils.DateTimeUtils;
+import org.ewgf.utils.PlayerIdUtils;
+import org.ewgf.utils.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.ewgf.utils.TekkenDataMapperUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -21,12 +27,37 @@ import static org.ewgf.utils.Constants.*;
 public class PlayerService {
     private final PlayerRepository playerRepository;
     private final BattleRepository battleRepository;
+    private final PlayerMatchupService playerMatchupService;
+    private final PlayerProfileCache playerProfileCache;
+    private final PlayerAutocompleteIndex playerAutocompleteIndex;
+    private final RecentlyActivePlayersTracker recentlyActivePlayersTracker;
+    private final SingleFlight<String, PlayerDTO> profileLoads;
+    private final int battlePageSize;
     private static final int MINIMUM_GAMES = 3;
+    private static final int MAX_BATTLE_PAGE_SIZE = 200;
+    private static final int SEARCH_RESULT_LIMIT = 20;
+    private static final int AUTOCOMPLETE_RESULT_LIMIT = 10;
+    private static final int RECENTLY_ACTIVE_LIMIT = 40;
+    private static final int TRIGRAM_LENGTH = 3;
+    private static final Duration PROFILE_LOAD_MAX_WAIT = Duration.ofSeconds(10);
     private static final Logger logger = LoggerFactory.getLogger(PlayerService.class);
 
-    public PlayerService(PlayerRepository playerRepository, BattleRepository battleRepository) {
+    public PlayerService(PlayerRepository playerRepository,
+                         BattleRepository battleRepository,
+                         PlayerMatchupService playerMatchupService,
+                         PlayerProfileCache playerProfileCache,
+                         PlayerAutocompleteIndex playerAutocompleteIndex,
+                         RecentlyActivePlayersTracker recentlyActivePlayersTracker,
+                         MeterRegistry meterRegistry,
+                         @Value("${player.battle-page-size:50}") int battlePageSize) {
         this.playerRepository = playerRepository;
         this.battleRepository = battleRepository;
+        this.playerMatchupService = playerMatchupService;
+        this.playerProfileCache = playerProfileCache;
+        this.playerAutocompleteIndex = playerAutocompleteIndex;
+        this.recentlyActivePlayersTracker = recentlyActivePlayersTracker;
+        this.profileLoads = new SingleFlight<>("player-profile", PROFILE_LOAD_MAX_WAIT, meterRegistry);
+        this.battlePageSize = battlePageSize;
     }
 
     public PlayerDTO getPlayerStats(String polarisId) throws Exception {
@@ -37,18 +68,89 @@ public class PlayerService {
             throw new BadRequestException("Invalid Polaris Id");
         }
 
+        Optional<PlayerDTO> cachedProfile = playerProfileCache.get(polarisId);
+        if (cachedProfile.isPresent()) return cachedProfile.get();
+
+        // concurrent misses for the same profile share a single load
+        String validPolarisId = polarisId;
+        return profileLoads.execute(validPolarisId, () -> loadPlayerProfile(validPolarisId));
+    }
+
+    private PlayerDTO loadPlayerProfile(String polarisId) throws Exception {
+        long cacheGeneration = playerProfileCache.currentGeneration();
         Optional<Player> playerStats = playerRepository.findByPolarisId(polarisId);
         if (playerStats.isEmpty()) return null;
 
-        Optional<List<Battle>> playerBattles =
-                battleRepository.findAllBattlesByPlayer(playerStats.get().getPlayerId());
+        BattlePageDTO firstPage = getBattlePage(playerStats.get().getPlayerId(), null, battlePageSize);
+        PlayerDTO playerDto = convertToPlayerDTO(playerStats.get(), firstPage);
+        playerProfileCache.put(playerStats.get().getPlayerId(), playerDto, cacheGeneration);
+        return playerDto;
+    }
+
+    public BattlePageDTO getPlayerBattles(String polarisId, String cursor, Integer limit) throws Exception {
+        if (polarisId == null || polarisId.isBlank() || polarisId.length() > MAX_POLARIS_LENGTH) {
+            throw new BadRequestException("Invalid Polaris Id");
+        }
+        int pageSize = limit == null ? battlePageSize : limit;
+        if (pageSize < 1 || pageSize > MAX_BATTLE_PAGE_SIZE) throw new BadRequestException("Invalid page size");
 
-        return convertToPlayerDTO(playerStats.get(),
-                playerBattles.orElse(Collections.emptyList()));
+        Optional<String> playerId = playerRepository.findPolarisIdByPlayerId(polarisId.trim());
+        if (playerId.isEmpty()) return null;
+        return getBattlePage(playerId.get(), cursor, pageSize);
+    }
+
+    // Keyset pagination on (battle_at, battle_id): one extra row tells whether there is a next page
+    private BattlePageDTO getBattlePage(String playerId, String cursor, int pageSize) throws BadRequestException {
+        long beforeAt = Long.MAX_VALUE;
+        String beforeId = "";
+        if (cursor != null && !cursor.isBlank()) {
+            String[] position = decodeCursor(cursor);
+            beforeAt = Long.parseLong(position[0]);
+            beforeId = position[1];
+        }
+
+        List<Battle> battles = battleRepository.findBattlePageByPlayer(playerId, beforeAt, beforeId, pageSize + 1);
+        boolean hasNextPage = battles.size() > pageSize;
+        if (hasNextPage) battles = battles.subList(0, pageSize);
+
+        BattlePageDTO page = new BattlePageDTO();
+        for (Battle battle : battles) {
+            page.getBattles().add(convertToBattleDTO(battle));
+        }
+        if (hasNextPage) page.setNextCursor(encodeCursor(battles.get(battles.size() - 1)));
+        return page;
+    }
+
+    private String encodeCursor(Battle battle) {
+        String position = battle.getBattleAt() + ":" + battle.getBattleId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decodeCursor(String cursor) throws BadRequestException {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = position.split(":", 2);
+            if (parts.length != 2) throw new IllegalArgumentException();
+            Long.parseLong(parts[0]);
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
     }
 
     public List<PlayerSearchDTO> searchPlayers(String query) {
-        Optional<List<Player>> playersOpt = playerRepository.findByNameOrPolarisIdContainingIgnoreCase(query, PageRequest.of(0, 20));
+        String normalizedQuery = query.toLowerCase(Locale.ROOT);
+        String pattern = escapeLikePattern(normalizedQuery);
+        Optional<List<PlayerSummaryProjection>> playersOpt = Optional.empty();
+        // a short query first tries the indexed name prefixes, which outrank every other match;
+        // only when they do not fill a page does it fall back to the (unindexed) substring search
+        if (normalizedQuery.length() < TRIGRAM_LENGTH) {
+            playersOpt = playerRepository.searchByNamePrefix(normalizedQuery, pattern, SEARCH_RESULT_LIMIT)
+                    .filter(players -> players.size() >= SEARCH_RESULT_LIMIT);
+        }
+        if (playersOpt.isEmpty()) {
+            playersOpt = playerRepository.searchByNameOrPolarisId(normalizedQuery, pattern, SEARCH_RESULT_LIMIT);
+        }
 
         return playersOpt.map(players -> players.stream()
                 .map(this::convertToSearchDTO)
@@ -56,24 +158,26 @@ public class PlayerService {
                 .orElse(Collections.emptyList());
     }
 
+    // Answered from memory only, see PlayerAutocompleteIndex
+    public List<AutocompleteSuggestionDTO> autocomplete(String query, Integer limit) throws BadRequestException {
+        int resultLimit = limit == null ? AUTOCOMPLETE_RESULT_LIMIT : limit;
+        if (resultLimit < 1 || resultLimit > SEARCH_RESULT_LIMIT) throw new BadRequestException("Invalid limit");
+        return playerAutocompleteIndex.suggest(query, resultLimit);
+    }
+
     public PlayerMetadataDTO getPlayerMetadata(String polarisId) {
-        Optional<Player> player = playerRepository.findByPolarisId(polarisId);
-        return player.map(this::convertToMetadataDTO).orElse(null);
+        return playerRepository.findSummaryByPolarisId(polarisId)
+                .map(this::convertToMetadataDTO)
+                .orElse(null);
     }
 
     public String getPlayerIdFromPolarisId(String polarisId) {
-        Optional<String> playerId = playerRepository.findPolarisIdByPlayerId(polarisId);
-        String paddedPlayerId = null;
-        if (playerId.isPresent()) {
-            paddedPlayerId = playerId.get();
-            if (paddedPlayerId.length() < 18) {
-                paddedPlayerId = String.format("%018d", Long.parseLong(paddedPlayerId));
-            }
-        }
-        return paddedPlayerId;
+        return playerRepository.findPolarisIdByPlayerId(polarisId)
+                .map(PlayerIdUtils::normalize)
+                .orElse(null);
     }
 
-    private PlayerDTO convertToPlayerDTO(Player player, List<Battle> playerBattles) {
+    private PlayerDTO convertToPlayerDTO(Player player, BattlePageDTO firstBattlePage) {
         PlayerDTO playerDto = new PlayerDTO();
         playerDto.setPolarisId(player.getPolarisId());
         playerDto.setName(player.getName());
@@ -83,53 +187,52 @@ public class PlayerService {
         playerDto.setMainCharacterAndRank(player.getMostPlayedCharacterInfo());
         Map<String, PlayerMatchupSummaryDTO> matchupSummaryDto = initializePlayerMatchupSummaryDTO(player.getCharacterStats());
         playerDto.setPlayedCharacters(matchupSummaryDto);
+        applyMatchups(matchupSummaryDto, playerMatchupService.findMatchups(player.getPlayerId()));
 
-        for (Battle battle : playerBattles) {
-            if (battle.getBattleType() == BattleType.RANKED_BATTLE) {
-                updatePlayerDTOWithBattle(playerDto, battle);
-            }
-
-            BattleDTO battleDTO = new BattleDTO(
-                    battle.getDate(),
-                    battle.getBattleType(),
-                    battle.getGameVersion(),
-                    battle.getPlayer1Name(),
-                    battle.getPlayer1PolarisId(),
-                    battle.getPlayer1CharacterId(),
-                    battle.getPlayer1RegionId(),
-                    battle.getPlayer1TekkenPower(),
-                    battle.getPlayer1DanRank(),
-                    battle.getPlayer2Name(),
-                    battle.getPlayer2PolarisId(),
-                    battle.getPlayer2RegionId(),
-                    battle.getPlayer2CharacterId(),
-                    battle.getPlayer2DanRank(),
-                    battle.getPlayer2TekkenPower(),
-                    battle.getPlayer1RoundsWon(),
-                    battle.getPlayer2RoundsWon(),
-                    battle.getWinner(),
-                    battle.getStageId());
-            playerDto.getBattles().add(battleDTO);
-        }
+        playerDto.setBattles(firstBattlePage.getBattles());
+        playerDto.setNextBattleCursor(firstBattlePage.getNextCursor());
         return playerDto;
     }
 
-    private void updatePlayerDTOWithBattle(PlayerDTO player, Battle battle) {
-        String characterPlayedByPlayer = getPlayerCharacter(player, battle);
-        String characterPlayedByOpponent = getOpponentCharacter(player, battle);
-        Integer playerNumber = getPlayerNumber(player, battle);
-        PlayerMatchupSummaryDTO matchupSummary = player.getPlayedCharacters().get(characterPlayedByPlayer);
-        MatchupStat matchupStat = matchupSummary.getMatchups().getOrDefault(characterPlayedByOpponent, new MatchupStat());
+    private BattleDTO convertToBattleDTO(Battle battle) {
+        return new BattleDTO(
+                battle.getDate(),
+                battle.getBattleType(),
+                battle.getGameVersion(),
+                battle.getPlayer1Name(),
+                battle.getPlayer1PolarisId(),
+                battle.getPlayer1CharacterId(),
+                battle.getPlayer1RegionId(),
+                battle.getPlayer1TekkenPower(),
+                battle.getPlayer1DanRank(),
+                battle.getPlayer2Name(),
+                battle.getPlayer2PolarisId(),
+                battle.getPlayer2RegionId(),
+                battle.getPlayer2CharacterId(),
+                battle.getPlayer2DanRank(),
+                battle.getPlayer2TekkenPower(),
+                battle.getPlayer1RoundsWon(),
+                battle.getPlayer2RoundsWon(),
+                battle.getWinner(),
+                battle.getStageId());
+    }
 
-        if(isWinner(playerNumber, battle)){
-            matchupStat.incrementWins();
-        }
-        else {
-            matchupStat.incrementLosses();
+    // Matchups come from player_matchups, grouped by character name like the rest of the profile
+    private void applyMatchups(Map<String, PlayerMatchupSummaryDTO> playedCharacters,
+                               List<PlayerMatchupService.MatchupRecord> matchups) {
+        for (PlayerMatchupService.MatchupRecord record : matchups) {
+            PlayerMatchupSummaryDTO matchupSummary =
+                    playedCharacters.get(TekkenDataMapperUtils.getCharacterName(record.characterId()));
+            if (matchupSummary == null) continue;
+
+            MatchupStat matchupStat = matchupSummary.getMatchups().computeIfAbsent(
+                    TekkenDataMapperUtils.getCharacterName(record.opponentCharacterId()), name -> new MatchupStat());
+            matchupStat.addResults(record.wins(), record.losses());
         }
-        matchupSummary.getMatchups().put(characterPlayedByOpponent, matchupStat);
-        updateBestAndWorstMatchups(matchupSummary);
 
+        for (PlayerMatchupSummaryDTO matchupSummary : playedCharacters.values()) {
+            updateBestAndWorstMatchups(matchupSummary);
+        }
     }
 
     private Map<String, PlayerMatchupSummaryDTO> initializePlayerMatchupSummaryDTO(Map<CharacterStatsId, CharacterStats> characterStats) {
@@ -183,20 +286,20 @@ public class PlayerService {
         return allCharacterMatchups;
     }
 
-    private PlayerMetadataDTO convertToMetadataDTO(Player player) {
+    private PlayerMetadataDTO convertToMetadataDTO(PlayerSummaryProjection player) {
         PlayerMetadataDTO dto = new PlayerMetadataDTO();
         dto.setPlayerName(player.getName());
         dto.setRegionId(player.getRegionId());
         dto.setPolarisId(player.getPolarisId());
         dto.setLatestBattleDate(DateTimeUtils.toReadableTime(player.getLatestBattle()));
         dto.setTekkenPower(player.getTekkenPower());
-        dto.setMainCharacterAndRank(player.getMostPlayedCharacterInfo());
+        dto.setMainCharacterAndRank(toCharacterAndRank(player.getMainCharacterId(), player.getMainDanRank()));
         return dto;
     }
 
-    private PlayerSearchDTO convertToSearchDTO(Player player) {
+    private PlayerSearchDTO convertToSearchDTO(PlayerSummaryProjection player) {
         PlayerSearchDTO dto = new PlayerSearchDTO();
-        Map<String, String> characterInfo = player.getMostPlayedCharacterInfo();
+        Map<String, String> characterInfo = toCharacterAndRank(player.getMainCharacterId(), player.getMainDanRank());
         dto.setId(player.getPlayerId());
         dto.setName(player.getName());
         dto.setTekkenId(player.getPolarisId());
@@ -208,23 +311,57 @@ public class PlayerService {
     }
 
     public List<RecentlyActivePlayersDTO> getRecentlyActivePlayers() {
-        Optional<List<Player>> recentlyActivePlayers = playerRepository.findAllActivePlayersInLast10Minutes();
+        if (recentlyActivePlayersTracker.isWarm()) {
+            return recentlyActivePlayersTracker.getRecentlyActive(RECENTLY_ACTIVE_LIMIT).stream()
+                    .map(this::convertToRecentlyActiveDTO)
+                    .toList();
+        }
+
+        // the tracker only covers what was ingested since startup
+        Optional<List<PlayerSummaryProjection>> recentlyActivePlayers = playerRepository.findAllActivePlayersInLast10Minutes();
         if (recentlyActivePlayers.isEmpty()) return Collections.emptyList();
         List<RecentlyActivePlayersDTO> recentlyActivePlayersDTOs = new ArrayList<>();
 
-        for (Player player : recentlyActivePlayers.get()) {
+        for (PlayerSummaryProjection player : recentlyActivePlayers.get()) {
             RecentlyActivePlayersDTO dto = new RecentlyActivePlayersDTO();
             dto.setName(player.getName());
             dto.setTekkenPower(player.getTekkenPower());
             dto.setPolarisId(player.getPolarisId());
             dto.setRegion(player.getRegionId());
-            dto.setCharacterAndRank(player.getRecentlyPlayedCharacter());
+            dto.setCharacterAndRank(toCharacterAndRank(player.getRecentCharacterId(), player.getRecentDanRank()));
             dto.setLastSeen(player.getLatestBattle());
             recentlyActivePlayersDTOs.add(dto);
         }
         return recentlyActivePlayersDTOs;
     }
 
+    // Same shape as Player.getMostPlayedCharacterInfo, built from the precomputed players columns
+    private static Map<String, String> toCharacterAndRank(String characterId, Integer danRank) {
+        Map<String, String> characterAndRank = new HashMap<>();
+        if (characterId == null) {
+            characterAndRank.put(CHARACTER_NAME, "No Character Data");
+            characterAndRank.put(DAN_RANK, "N/A");
+        } else {
+            characterAndRank.put(CHARACTER_NAME, TekkenDataMapperUtils.getCharacterName(characterId));
+            characterAndRank.put(DAN_RANK, TekkenDataMapperUtils.getDanName(String.valueOf(danRank)));
+        }
+        return characterAndRank;
+    }
+
+    private RecentlyActivePlayersDTO convertToRecentlyActiveDTO(RecentlyActivePlayersTracker.Activity activity) {
+        RecentlyActivePlayersDTO dto = new RecentlyActivePlayersDTO();
+        dto.setName(activity.name());
+        dto.setTekkenPower(activity.tekkenPower());
+        dto.setPolarisId(activity.polarisId());
+        dto.setRegion(activity.regionId());
+        Map<String, String> characterAndRank = new HashMap<>();
+        characterAndRank.put(CHARACTER_NAME, TekkenDataMapperUtils.getCharacterName(String.valueOf(activity.characterId())));
+        characterAndRank.put(DAN_RANK, TekkenDataMapperUtils.getDanName(String.valueOf(activity.danRank())));
+        dto.setCharacterAndRank(characterAndRank);
+        dto.setLastSeen(activity.battleAt());
+        return dto;
+    }
+
     private void updateBestAndWorstMatchups(PlayerMatchupSummaryDTO matchupSummary) {
         Float bestWinRate = null;
         Float worstWinRate = null;
@@ -259,26 +396,9 @@ public class PlayerService {
         }
     }
 
-    private String getOpponentCharacter(PlayerDTO playerDto, Battle battle) {
-        String characterId = playerDto.getPolarisId().equals(battle.getPlayer1PolarisId())
-                ? String.valueOf(battle.getPlayer2CharacterId())
-                : String.valueOf(battle.getPlayer1CharacterId());
-        return TekkenDataMapperUtils.getCharacterName(characterId);
-    }
-
-    private String getPlayerCharacter(PlayerDTO playerDto, Battle battle) {
-        String characterId = playerDto.getPolarisId().equals(battle.getPlayer1PolarisId())
-                ? String.valueOf(battle.getPlayer1CharacterId())
-                : String.valueOf(battle.getPlayer2CharacterId());
-        return TekkenDataMapperUtils.getCharacterName(characterId);
-    }
-
-    private boolean isWinner(Integer playerNumber, Battle battle) {
-        return playerNumber == battle.getWinner();
-    }
-
-    private Integer getPlayerNumber(PlayerDTO playerDto, Battle battle) {
-        return playerDto.getPolarisId().equals(battle.getPlayer1PolarisId()) ? 1 : 2;
+    // LIKE's default escape character is the backslash
+    private static String escapeLikePattern(String query) {
+        return query.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
     }
 
     private String formatPolarisId(String rawPolarisId) {
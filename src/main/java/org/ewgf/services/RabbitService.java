@@ -9,6 +9,7 @@ import org.apache.logging.log4j.Logger;
 
 import org.ewgf.utils.DateTimeUtils;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.messaging.handler.annotation.Header;
@@ -32,6 +33,7 @@ import static org.ewgf.utils.Constants.TIMESTAMP_HEADER;
 
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "ingestion.coalescing.enabled", havingValue = "false", matchIfMissing = true)
 public class RabbitService {
 
     private final BattleProcessingService battleProcessingService;
@@ -0,0 +1,87 @@
+package org.ewgf.services;
+
+import org.ewgf.models.Battle;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * Fixed-size ring of the latest ranked appearances written by ingest, newest last. Reading walks the
+ * ring once, keeps each player's newest appearance and returns the most recent ones, so the homepage
+ * never scans players. Until the process has been up for a whole activity window the ring may be
+ * missing players, and callers should fall back to the database.
+ */
+@Component
+public class RecentlyActivePlayersTracker {
+
+    public record Activity(String playerId, String name, String polarisId, Integer regionId,
+                           int characterId, int danRank, long tekkenPower, long battleAt) {}
+
+    public static final long ACTIVITY_WINDOW_SECONDS = TimeUnit.MINUTES.toSeconds(10);
+
+    private final AtomicReferenceArray<Activity> ring;
+    private final AtomicLong nextSlot = new AtomicLong();
+    private final long startedAt = System.currentTimeMillis();
+
+    public RecentlyActivePlayersTracker(@Value("${player.recently-active.capacity:1024}") int capacity) {
+        this.ring = new AtomicReferenceArray<>(capacity);
+    }
+
+    // Applied once the ingest transaction commits
+    public void recordBattles(List<Battle> rankedBattles) {
+        if (rankedBattles.isEmpty()) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    push(rankedBattles);
+                }
+            });
+        } else {
+            push(rankedBattles);
+        }
+    }
+
+    public boolean isWarm() {
+        return System.currentTimeMillis() - startedAt >= TimeUnit.SECONDS.toMillis(ACTIVITY_WINDOW_SECONDS);
+    }
+
+    public List<Activity> getRecentlyActive(int limit) {
+        long oldestBattleAt = System.currentTimeMillis() / 1000 - ACTIVITY_WINDOW_SECONDS;
+        Map<String, Activity> newestByPlayer = new HashMap<>();
+        for (int i = 0; i < ring.length(); i++) {
+            Activity activity = ring.get(i);
+            if (activity == null || activity.battleAt() <= oldestBattleAt) continue;
+            newestByPlayer.merge(activity.playerId(), activity,
+                    (current, other) -> other.battleAt() > current.battleAt() ? other : current);
+        }
+        return newestByPlayer.values().stream()
+                .sorted(Comparator.comparingLong(Activity::battleAt).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    private void push(List<Battle> rankedBattles) {
+        // replays from historical fetches are never "recently active"
+        long oldestBattleAt = System.currentTimeMillis() / 1000 - ACTIVITY_WINDOW_SECONDS;
+        for (Battle battle : rankedBattles) {
+            if (battle.getBattleAt() <= oldestBattleAt) continue;
+            put(new Activity(battle.getPlayer1UserId(), battle.getPlayer1Name(), battle.getPlayer1PolarisId(),
+                    battle.getPlayer1RegionId(), battle.getPlayer1CharacterId(), battle.getPlayer1DanRank(),
+                    battle.getPlayer1TekkenPower(), battle.getBattleAt()));
+            put(new Activity(battle.getPlayer2UserId(), battle.getPlayer2Name(), battle.getPlayer2PolarisId(),
+                    battle.getPlayer2RegionId(), battle.getPlayer2CharacterId(), battle.getPlayer2DanRank(),
+                    battle.getPlayer2TekkenPower(), battle.getBattleAt()));
+        }
+    }
+
+    private void put(Activity activity) {
+        ring.set((int) (nextSlot.getAndIncrement() % ring.length()), activity);
+    }
+}
@@ -0,0 +1,103 @@
+package org.ewgf.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.ewgf.models.Battle;
+
+import java.util.*;
+
+/*
+ * Battle ids published to RabbitMQ recently, so the overlap between consecutive fetch windows is dropped
+ * here instead of travelling through the queue to be discarded by ON CONFLICT. Two generations rotate:
+ * ids land in the current one, lookups check both, and once the current one is older than the horizon
+ * (or full) it becomes the previous one and the old previous one is dropped. An id is therefore remembered
+ * for at least one horizon, or, when more than maxIdsPerGeneration ids are sent within a horizon, until at
+ * least maxIdsPerGeneration newer ids have been sent: a size-triggered rotation drops the previous
+ * generation early, trading the horizon for bounded memory (counted as cause=size). Exact sets, so a
+ * battle that was never sent is never suppressed.
+ * Each walker (the live fetcher or a backfill range) owns one, so history walked by the backfill never
+ * rotates the live fetcher's overlap ids out early.
+ */
+public class RecentlySentBattleFilter {
+
+    private final boolean enabled;
+    private final long horizonMillis;
+    private final int maxIdsPerGeneration;
+    private final Counter suppressed;
+    private final Counter sent;
+    private final Counter horizonRotations;
+    private final Counter sizeRotations;
+
+    private Set<String> current = new HashSet<>();
+    private Set<String> previous = new HashSet<>();
+    private long currentStartedAt = System.currentTimeMillis();
+
+    public RecentlySentBattleFilter(boolean enabled, long horizonMillis, int maxIdsPerGeneration,
+                                    MeterRegistry meterRegistry, String fetcher) {
+        this.enabled = enabled;
+        this.horizonMillis = horizonMillis;
+        this.maxIdsPerGeneration = maxIdsPerGeneration;
+        this.suppressed = Counter.builder("ewgf.wavu.duplicates")
+                .description("Fetched battles checked against the recently sent ids")
+                .tag("result", "suppressed")
+                .tag("fetcher", fetcher)
+                .register(meterRegistry);
+        this.sent = Counter.builder("ewgf.wavu.duplicates")
+                .description("Fetched battles checked against the recently sent ids")
+                .tag("result", "sent")
+                .tag("fetcher", fetcher)
+                .register(meterRegistry);
+        this.horizonRotations = Counter.builder("ewgf.wavu.duplicates.rotations")
+                .description("Generations of recently sent ids dropped")
+                .tag("cause", "horizon")
+                .tag("fetcher", fetcher)
+                .register(meterRegistry);
+        this.sizeRotations = Counter.builder("ewgf.wavu.duplicates.rotations")
+                .description("Generations of recently sent ids dropped")
+                .tag("cause", "size")
+                .tag("fetcher", fetcher)
+                .register(meterRegistry);
+    }
+
+    // Battles not sent within the horizon, also without repeats inside the list itself
+    public synchronized List<Battle> filterUnsent(List<Battle> battles) {
+        if (!enabled) return battles;
+        rotateIfDue();
+
+        List<Battle> unsent = new ArrayList<>(battles.size());
+        Set<String> seenInBatch = new HashSet<>();
+        for (Battle battle : battles) {
+            String battleId = battle.getBattleId();
+            if (current.contains(battleId) || previous.contains(battleId) || !seenInBatch.add(battleId)) continue;
+            unsent.add(battle);
+        }
+
+        suppressed.increment(battles.size() - unsent.size());
+        sent.increment(unsent.size());
+        return unsent;
+    }
+
+    // Only called once the publish went through, so a failed send is retried in full
+    public synchronized void markSent(List<Battle> battles) {
+        if (!enabled) return;
+        for (Battle battle : battles) {
+            current.add(battle.getBattleId());
+        }
+        rotateIfDue();
+    }
+
+    private void rotateIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - currentStartedAt >= horizonMillis) {
+            horizonRotations.increment();
+        } else if (current.size() >= maxIdsPerGeneration) {
+            // previous may still hold ids younger than the horizon, they are forgotten early
+            sizeRotations.increment();
+        } else {
+            return;
+        }
+        previous = current;
+        current = new HashSet<>();
+        currentStartedAt = now;
+    }
+}
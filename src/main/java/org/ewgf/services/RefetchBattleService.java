@@ -3,12 +3,7 @@ package org.ewgf.services;
 import lombok.extern.slf4j.Slf4j;
 import org.ewgf.configuration.BackpressureManager;
 import org.ewgf.models.Battle;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.time.Instant;
 import java.util.List;
@@ -16,23 +11,17 @@ import java.util.List;
 @Service
 @Slf4j
 public class RefetchBattleService {
-    private final RestTemplate restTemplate;
     private final WavuService wavuService;
     private final BackpressureManager backpressureManager;
-    private final String wavuApi;
     private static final long STEP_SECONDS = 600;
     private static final long MAX_DAYS = 365;
     private static final long DELAY_BETWEEN_REQUESTS = 500L;
 
     public RefetchBattleService(
-            RestTemplate restTemplate,
             WavuService wavuService,
-            BackpressureManager backpressureManager,
-            @Value("${wavu.api}") String wavuApi) {
-        this.restTemplate = restTemplate;
+            BackpressureManager backpressureManager) {
         this.wavuService = wavuService;
         this.backpressureManager = backpressureManager;
-        this.wavuApi = wavuApi;
     }
 
     public void fetchHistoricalBattles(int daysToFetch) throws IllegalArgumentException, InterruptedException {
@@ -78,29 +67,18 @@ public class RefetchBattleService {
     }
 
     private void fetchAndProcessBattleBatch(long currentBefore, int currentStep, int totalSteps) {
-        String url = buildUrl(currentBefore);
         log.info("Requesting replays: battle_at <= {} AND battle_at > {} (Progress: {}/{})",
                 currentBefore, currentBefore - 700, currentStep, totalSteps);
 
         try {
-            ResponseEntity<List<Battle>> response = restTemplate.exchange(
-                    url,
-                    HttpMethod.GET,
-                    null,
-                    new ParameterizedTypeReference<>() {}
-            );
-
-            processApiResponse(response.getBody(), currentBefore);
+            // goes through the shared Wavu rate limiter
+            processApiResponse(wavuService.fetchBattlesFromApi(currentBefore), currentBefore);
         } catch (Exception e) {
             log.error("Error fetching replays for 'before={}', skipping step. Reason: {}",
                     currentBefore, e.getMessage());
         }
     }
 
-    private String buildUrl(long before) {
-        return wavuApi + "?before=" + before;
-    }
-
     private int calculateTotalSteps(long totalSeconds) {
         return (int) (totalSeconds / STEP_SECONDS);
     }
@@ -0,0 +1,127 @@
+package org.ewgf.services;
+
+import org.ewgf.repositories.CharacterStatsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Recomputes character_stats wins and losses from battles with a few statements per game version instead of
+ * one query per player: both sides of every battle are aggregated into a staging table, which is then merged
+ * into character_stats in primary key order. Each merged version is checkpointed, so a restart skips it.
+ */
+@Service
+public class SetBasedCharacterStatsRevalidator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SetBasedCharacterStatsRevalidator.class);
+
+    public static final String JOB_NAME = "character-stats-revalidation-set-based";
+
+    private static final String CREATE_STAGING_SQL = """
+        CREATE TEMP TABLE character_stats_revalidation (
+            player_id character varying NOT NULL,
+            character_id character varying NOT NULL,
+            game_version integer NOT NULL,
+            wins integer NOT NULL,
+            losses integer NOT NULL,
+            dan_rank integer NOT NULL,
+            latest_battle bigint NOT NULL
+        ) ON COMMIT DROP
+        """;
+
+    // Also fills the shadow table of the online mode, see OnlineCharacterStatsRevalidator.
+    // A battle against oneself counts once, on the player 1 side, as in the per-player mode.
+    static final String AGGREGATE_SQL_TEMPLATE = """
+        INSERT INTO %s
+            (player_id, character_id, game_version, wins, losses, dan_rank, latest_battle)
+        SELECT player_id, character_id, game_version, SUM(win), SUM(loss), MAX(dan_rank), MAX(battle_at)
+        FROM (
+            SELECT player1_id AS player_id, player1_character_id::varchar AS character_id, game_version,
+                   (winner = 1)::int AS win, (winner <> 1)::int AS loss, player1_dan_rank AS dan_rank, battle_at
+            FROM battles WHERE game_version = ?
+            UNION ALL
+            SELECT player2_id, player2_character_id::varchar, game_version,
+                   (winner = 2)::int, (winner <> 2)::int, player2_dan_rank, battle_at
+            FROM battles WHERE game_version = ? AND player1_id <> player2_id
+        ) sides
+        GROUP BY player_id, character_id, game_version
+        """;
+
+    private static final String AGGREGATE_SQL = AGGREGATE_SQL_TEMPLATE.formatted("character_stats_revalidation");
+
+    // Existing rows only get their counts corrected; dan rank and latest battle stay with ingest.
+    // Rows missing entirely take the highest rank seen, the next ingested battle sets the current one.
+    private static final String MERGE_SQL = """
+        INSERT INTO character_stats (player_id, character_id, game_version, wins, losses, dan_rank, latest_battle)
+        SELECT player_id, character_id, game_version, wins, losses, dan_rank, latest_battle
+        FROM character_stats_revalidation
+        ORDER BY player_id, character_id, game_version
+        ON CONFLICT (player_id, character_id, game_version) DO UPDATE SET
+            wins = EXCLUDED.wins,
+            losses = EXCLUDED.losses
+        WHERE character_stats.wins IS DISTINCT FROM EXCLUDED.wins
+           OR character_stats.losses IS DISTINCT FROM EXCLUDED.losses
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CharacterStatsRepository characterStatsRepository;
+    private final PlayerCharacterSummaryService playerCharacterSummaryService;
+    private final JobCheckpointStore jobCheckpointStore;
+    private final TransactionTemplate transactionTemplate;
+
+    public SetBasedCharacterStatsRevalidator(JdbcTemplate jdbcTemplate,
+                                             CharacterStatsRepository characterStatsRepository,
+                                             PlayerCharacterSummaryService playerCharacterSummaryService,
+                                             JobCheckpointStore jobCheckpointStore,
+                                             PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.characterStatsRepository = characterStatsRepository;
+        this.playerCharacterSummaryService = playerCharacterSummaryService;
+        this.jobCheckpointStore = jobCheckpointStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public void revalidate(boolean restart) {
+        List<Integer> gameVersions = new ArrayList<>(
+                characterStatsRepository.findAllGameVersions().orElse(Collections.emptyList()));
+        Collections.sort(gameVersions);
+        JobCheckpointStore.JobCheckpoint checkpoint = jobCheckpointStore.startOrResume(JOB_NAME, gameVersions.size(), restart);
+        logger.info("Starting set-based revalidation for game versions: {}, resuming after: {}",
+                gameVersions, checkpoint.lastKey());
+
+        long processed = checkpoint.processed();
+        for (int gameVersion : gameVersions) {
+            if (checkpoint.lastKey() != null && gameVersion <= Integer.parseInt(checkpoint.lastKey())) continue;
+            revalidateGameVersion(gameVersion);
+            jobCheckpointStore.advance(JOB_NAME, String.valueOf(gameVersion), ++processed);
+        }
+        playerCharacterSummaryService.refreshAll();
+        jobCheckpointStore.complete(JOB_NAME);
+    }
+
+    /*
+     * The table lock holds back ingest's character_stats upserts while a version is recomputed, so no
+     * increment is lost or counted twice: batches committed before the lock are read from battles,
+     * later ones add on top of the merged counts.
+     */
+    private void revalidateGameVersion(int gameVersion) {
+        long startTime = System.currentTimeMillis();
+        int[] counts = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("LOCK TABLE character_stats IN SHARE ROW EXCLUSIVE MODE");
+            jdbcTemplate.execute(CREATE_STAGING_SQL);
+            int aggregated = jdbcTemplate.update(AGGREGATE_SQL, gameVersion, gameVersion);
+            int merged = jdbcTemplate.update(MERGE_SQL);
+            return new int[]{aggregated, merged};
+        });
+
+        logger.info("Revalidated game version {}: {} character stats recomputed, {} corrected: {} ms",
+                gameVersion, counts[0], counts[1], (System.currentTimeMillis() - startTime));
+    }
+}
@@ -4,22 +4,27 @@ import org.ewgf.repositories.TekkenStatsSummaryRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.ewgf.aggregations.AggregatedStatistic;
-import org.ewgf.aggregations.AggregatedStatisticId;
-import org.ewgf.aggregations.IndividualStatistic;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.ewgf.aggregations.PackedStatisticsAccumulator;
 import org.ewgf.events.ReplayProcessingCompletedEvent;
-import org.ewgf.repositories.AggregatedStatisticsRepository;
+import org.ewgf.events.StatisticsComputedEvent;
 import org.ewgf.repositories.CharacterStatsRepository;
 
-import java.time.LocalDateTime;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import static org.ewgf.utils.Constants.OVERALL_CATEGORY;
 import static org.ewgf.utils.Constants.STANDARD_CATEGORY;
@@ -27,21 +32,54 @@ import static org.ewgf.utils.Constants.STANDARD_CATEGORY;
 @Service
 public class StatisticsCalculationService {
     private final CharacterStatsRepository characterStatsRepository;
-    private final AggregatedStatisticsRepository aggregatedStatisticsRepository;
+    private final AggregatedStatisticsWriter aggregatedStatisticsWriter;
     private final TekkenStatsSummaryRepository tekkenStatsSummaryRepository;
     private final Executor statisticsExecutor;
+    private final AggregatedStatisticsDeltaService aggregatedStatisticsDeltaService;
+    private final TransactionTemplate reconcileTransactionTemplate;
+    private final TransactionTemplate statisticsTransactionTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
     private static final Logger logger = LoggerFactory.getLogger(StatisticsCalculationService.class);
     private final AtomicBoolean isProcessing = new AtomicBoolean(false);
 
+    private static final String STATS_BY_GAME_VERSION_SQL = """
+        SELECT
+            cs.player_id as playerId,
+            cs.character_id as characterId,
+            cs.dan_rank as danRank,
+            cs.wins as wins,
+            cs.losses as losses,
+            p.region_id as regionId
+        FROM character_stats cs
+        JOIN players p ON cs.player_id = p.player_id
+        WHERE cs.game_version = ?
+        ORDER BY cs.player_id
+        """;
+
     public StatisticsCalculationService(
             CharacterStatsRepository characterStatsRepository,
-            AggregatedStatisticsRepository aggregatedStatisticsRepository,
+            AggregatedStatisticsWriter aggregatedStatisticsWriter,
             TekkenStatsSummaryRepository tekkenStatsSummaryRepository,
-            @Qualifier("statisticsThreadExecutor") Executor statisticsExecutor) {
+            @Qualifier("statisticsThreadExecutor") Executor statisticsExecutor,
+            AggregatedStatisticsDeltaService aggregatedStatisticsDeltaService,
+            PlatformTransactionManager transactionManager,
+            JdbcTemplate jdbcTemplate,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${statistics.fetch-size:10000}") int fetchSize) {
         this.characterStatsRepository = characterStatsRepository;
-        this.aggregatedStatisticsRepository = aggregatedStatisticsRepository;
+        this.aggregatedStatisticsWriter = aggregatedStatisticsWriter;
         this.tekkenStatsSummaryRepository = tekkenStatsSummaryRepository;
         this.statisticsExecutor = statisticsExecutor;
+        this.aggregatedStatisticsDeltaService = aggregatedStatisticsDeltaService;
+        // Repeatable read: the pending deltas discarded and the character_stats read must share one snapshot
+        this.reconcileTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.reconcileTransactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.statisticsTransactionTemplate = new TransactionTemplate(transactionManager);
+        // A fetch size makes the Postgres driver use a forward-only cursor instead of buffering the whole result
+        this.streamingJdbcTemplate = new JdbcTemplate(Objects.requireNonNull(jdbcTemplate.getDataSource()));
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+        this.eventPublisher = eventPublisher;
     }
 
     @EventListener
@@ -53,9 +91,15 @@ public class StatisticsCalculationService {
         }
 
         try {
-            logger.info("Computing statistics for game versions: {} ", event.getGameVersions());
-            processGameVersions(event.getGameVersions());
+            if (aggregatedStatisticsDeltaService.isEnabled()) {
+                logger.info("Applying incremental statistics for game versions: {} ", event.getGameVersions());
+                aggregatedStatisticsDeltaService.applyPendingDeltas();
+            } else {
+                logger.info("Computing statistics for game versions: {} ", event.getGameVersions());
+                processGameVersions(event.getGameVersions());
+            }
             tekkenStatsSummaryRepository.updateTotalPlayersCount();
+            eventPublisher.publishEvent(new StatisticsComputedEvent(System.currentTimeMillis()));
         } catch (Exception e) {
             logger.error("Error computing statistics: ", e);
         } finally {
@@ -64,215 +108,153 @@ public class StatisticsCalculationService {
         }
     }
 
-    private void processGameVersions(Set<Integer> gameVersions) {
-        for (int gameVersion : gameVersions) {
-            processGameVersionStatistics(gameVersion);
+    /*
+     * In incremental mode the full recompute only runs periodically, to correct any drift
+     * (e.g. region changes on versions a batch did not touch) and to seed the table.
+     */
+    @Scheduled(initialDelayString = "${statistics.reconcile.initial-delay-ms:60000}",
+            fixedDelayString = "${statistics.reconcile.interval-ms:21600000}")
+    public void reconcileStatistics() {
+        if (!aggregatedStatisticsDeltaService.isEnabled()) return;
+        if (!acquireProcessingLock()) {
+            logger.info("Statistics computation in progress, skipping reconcile.");
+            return;
         }
-    }
 
-    private void processGameVersionStatistics(int gameVersion) {
-        logger.info("Processing statistics for game version: {}", gameVersion);
-        List<Object[]> allStats = characterStatsRepository.findAllStatsByGameVersion(gameVersion);
-        processStatisticsByCategory(allStats,gameVersion, STANDARD_CATEGORY);
-        processStatisticsByCategory(allStats,gameVersion, OVERALL_CATEGORY);
+        try {
+            Set<Integer> gameVersions = new HashSet<>(
+                    characterStatsRepository.findAllGameVersions().orElse(Collections.emptyList()));
+            logger.info("Reconciling statistics for game versions: {} ", gameVersions);
+            for (int gameVersion : gameVersions) {
+                reconcileTransactionTemplate.executeWithoutResult(status -> {
+                    aggregatedStatisticsDeltaService.discardPendingDeltas(gameVersion);
+                    processGameVersionStatistics(gameVersion);
+                });
+            }
+            tekkenStatsSummaryRepository.updateTotalPlayersCount();
+            eventPublisher.publishEvent(new StatisticsComputedEvent(System.currentTimeMillis()));
+        } catch (Exception e) {
+            logger.error("Error reconciling statistics: ", e);
+        } finally {
+            releaseProcessingLock();
+            logger.info("Statistics reconcile done.");
+        }
     }
 
-    private void processStatisticsByCategory(List<Object[]> allStats, int gameVersion, String category) {
-        Map<AggregatedStatisticId, AggregatedStatistic> existingStatsMap =
-                loadExistingStatistics(gameVersion, category);
-
-        if (category.equals(STANDARD_CATEGORY)) {
-            Map<String, IndividualStatistic> playerMainCharacters = identifyPlayerMainCharacters(allStats);
-            Map<AggregatedStatisticId, AggregatedStatistic> aggregatedData =
-                    aggregateStatistics(playerMainCharacters, category, gameVersion, existingStatsMap);
-            saveAggregatedStatistics(aggregatedData.values());
-        } else {
-            Map<String, List<IndividualStatistic>> allPlayerCharacters = getAllPlayerCharacters(allStats);
-            Map<AggregatedStatisticId, AggregatedStatistic> aggregatedData =
-                    aggregateOverallStatistics(allPlayerCharacters, gameVersion, existingStatsMap);
-            saveAggregatedStatistics(aggregatedData.values());
+    private void processGameVersions(Set<Integer> gameVersions) {
+        for (int gameVersion : gameVersions) {
+            // the cursor only streams inside a transaction
+            statisticsTransactionTemplate.executeWithoutResult(status -> processGameVersionStatistics(gameVersion));
         }
     }
 
-    private Map<String, IndividualStatistic> identifyPlayerMainCharacters(List<Object[]> stats) {
-        Map<String, IndividualStatistic> playerDataMap = new HashMap<>();
-
-        for (Object[] row : stats) {
-            // Skip records with missing region
-            if (row[5] == null) continue;
-            try {
-                String playerId = (String) row[0];
-                IndividualStatistic characterData = extractFromDbRow(row);
-                updateMainCharacter(playerDataMap, playerId, characterData);
-            } catch (ClassCastException | NullPointerException e) {
-                logger.error("Error processing row for main character statistics: ", e);
-            }
+    /*
+     * Streams character_stats ordered by player, so only the current player's main character candidate
+     * and the aggregated cells are held in memory, never the whole version.
+     */
+    private void processGameVersionStatistics(int gameVersion) {
+        logger.info("Processing statistics for game version: {}", gameVersion);
+        long startTime = System.currentTimeMillis();
+
+        GameVersionStatisticsCollector collector = new GameVersionStatisticsCollector(gameVersion);
+        streamingJdbcTemplate.query(STATS_BY_GAME_VERSION_SQL, ps -> ps.setInt(1, gameVersion), collector);
+        collector.finish();
+        if (collector.getSkippedRows() > 0) {
+            logger.warn("Skipped {} character_stats rows of game version {} that do not map to a statistic cell",
+                    collector.getSkippedRows(), gameVersion);
         }
 
-        return playerDataMap;
+        aggregatedStatisticsWriter.writeChangedCells(gameVersion, collector.getAccumulator());
+        logger.info("Processed {} statistic cells for game version {}: {} ms",
+                collector.getAccumulator().size(), gameVersion, (System.currentTimeMillis() - startTime));
     }
 
-    private void updateMainCharacter(
-            Map<String, IndividualStatistic> playerDataMap,
-            String playerId,
-            IndividualStatistic newData) {
-
-        IndividualStatistic currentData = playerDataMap.get(playerId);
-
-        if (currentData == null ||
-                newData.getDanRank() > currentData.getDanRank() ||
-                (newData.getDanRank() == currentData.getDanRank() &&
-                        newData.getTotalPlays() > currentData.getTotalPlays())) {
-            playerDataMap.put(playerId, newData);
+    /*
+     * Feeds both categories in one pass. Every row goes to its overall cell; once all rows of a player
+     * have been seen, the main character (highest dan rank, then most plays) goes to its standard cell.
+     * A player adds at most one row to any cell, so the player count is just the number of rows added.
+     * A row with a non-numeric character id or a field too large for the packed key is skipped and counted,
+     * so one bad row never fails the whole run.
+     */
+    private static class GameVersionStatisticsCollector implements RowCallbackHandler {
+        private final int gameVersion;
+        private final PackedStatisticsAccumulator accumulator = new PackedStatisticsAccumulator(4096);
+
+        private String currentPlayerId;
+        private boolean hasMainCharacter;
+        private int mainCharacterId;
+        private int mainDanRank;
+        private int mainWins;
+        private int mainLosses;
+        private int mainRegionId;
+        private long skippedRows;
+
+        GameVersionStatisticsCollector(int gameVersion) {
+            this.gameVersion = gameVersion;
         }
-    }
 
-    private Map<String, List<IndividualStatistic>> getAllPlayerCharacters(List<Object[]> stats) {
-        Map<String, List<IndividualStatistic>> playerDataMap = new HashMap<>();
-
-        for (Object[] row : stats) {
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
             // Skip records with missing region
-            if (row[5] == null) continue;
+            int regionId = rs.getInt(6);
+            if (rs.wasNull()) return;
+
+            String playerId = rs.getString(1);
+            int characterId = parseCharacterId(rs.getString(2));
+            int danRank = rs.getInt(3);
+            int wins = rs.getInt(4);
+            int losses = rs.getInt(5);
+
+            if (!PackedStatisticsAccumulator.canPack(gameVersion, characterId, danRank, regionId)) {
+                skippedRows++;
+                return;
+            }
 
-            try {
-                String playerId = (String) row[0];
-                IndividualStatistic characterData = extractFromDbRow(row);
+            if (!playerId.equals(currentPlayerId)) {
+                finish();
+                currentPlayerId = playerId;
+            }
 
-                // Add this character to the player's list
-                playerDataMap.computeIfAbsent(playerId, k -> new ArrayList<>())
-                        .add(characterData);
-            } catch (ClassCastException | NullPointerException e) {
-                logger.error("Error processing row for overall character statistics: ", e);
+            accumulator.add(PackedStatisticsAccumulator.packKey(gameVersion, characterId, danRank, regionId, true),
+                    wins, losses);
+
+            if (!hasMainCharacter || danRank > mainDanRank ||
+                    (danRank == mainDanRank && wins + losses > mainWins + mainLosses)) {
+                hasMainCharacter = true;
+                mainCharacterId = characterId;
+                mainDanRank = danRank;
+                mainWins = wins;
+                mainLosses = losses;
+                mainRegionId = regionId;
             }
         }
-        return playerDataMap;
-    }
-
-    private IndividualStatistic extractFromDbRow(Object[] row) {
-        String characterId = (String) row[1];
-        int danRank = ((Number) row[2]).intValue();
-        int wins = ((Number) row[3]).intValue();
-        int losses = ((Number) row[4]).intValue();
-        int regionId = ((Number) row[5]).intValue();
-        int totalPlays = wins + losses;
-        return new IndividualStatistic(characterId, danRank, wins, losses, totalPlays, regionId);
-    }
-
-    private Map<AggregatedStatisticId, AggregatedStatistic> aggregateStatistics(
-            Map<String, IndividualStatistic> playerCharacters,
-            String category,
-            int gameVersion,
-            Map<AggregatedStatisticId, AggregatedStatistic> existingStats) {
 
-        Map<AggregatedStatisticId, AggregatedStatistic> aggregatedData = new HashMap<>();
-        Map<AggregatedStatisticId, Set<String>> playersPerStat = new HashMap<>();
-
-        for (Map.Entry<String, IndividualStatistic> entry : playerCharacters.entrySet()) {
-                String playerId = entry.getKey();
-                IndividualStatistic data = entry.getValue();
-
-                AggregatedStatisticId id = createStatisticId(gameVersion, data, category);
-                AggregatedStatistic stat = getOrCreateStatistic(id, existingStats, aggregatedData);
-
-                updateStatisticCounts(stat, data);
-                playersPerStat.computeIfAbsent(id, k -> new HashSet<>()).add(playerId);
-                aggregatedData.put(id, stat);
+        // Flushes the main character of the player currently being read
+        void finish() {
+            if (!hasMainCharacter) return;
+            accumulator.add(PackedStatisticsAccumulator.packKey(gameVersion, mainCharacterId, mainDanRank, mainRegionId, false),
+                    mainWins, mainLosses);
+            hasMainCharacter = false;
         }
-        updatePlayerCounts(aggregatedData, playersPerStat);
-        return aggregatedData;
-    }
 
-    private Map<AggregatedStatisticId, AggregatedStatistic> aggregateOverallStatistics(
-            Map<String, List<IndividualStatistic>> allPlayerCharacters,
-            int gameVersion,
-            Map<AggregatedStatisticId, AggregatedStatistic> existingStats) {
-
-        Map<AggregatedStatisticId, AggregatedStatistic> aggregatedData = new HashMap<>();
-        Map<AggregatedStatisticId, Set<String>> playersPerStat = new HashMap<>();
-
-        for (Map.Entry<String, List<IndividualStatistic>> entry : allPlayerCharacters.entrySet()) {
-            String playerId = entry.getKey();
-            List<IndividualStatistic> characterDataList = entry.getValue();
-
-            for (IndividualStatistic data : characterDataList) {
-                AggregatedStatisticId id = createStatisticId(gameVersion, data, OVERALL_CATEGORY);
-                AggregatedStatistic stat = getOrCreateStatistic(id, existingStats, aggregatedData);
-
-                updateStatisticCounts(stat, data);
-                playersPerStat.computeIfAbsent(id, k -> new HashSet<>()).add(playerId);
-                aggregatedData.put(id, stat);
-            }
+        PackedStatisticsAccumulator getAccumulator() {
+            return accumulator;
         }
-        updatePlayerCounts(aggregatedData, playersPerStat);
-        return aggregatedData;
-    }
-
-    private AggregatedStatisticId createStatisticId(int gameVersion, IndividualStatistic data, String category) {
-        return new AggregatedStatisticId(
-                gameVersion,
-                data.getCharacterId(),
-                data.getDanRank(),
-                category,
-                data.getRegionId()
-        );
-    }
 
-    private AggregatedStatistic getOrCreateStatistic(
-            AggregatedStatisticId id,
-            Map<AggregatedStatisticId, AggregatedStatistic> existingStats,
-            Map<AggregatedStatisticId, AggregatedStatistic> aggregatedData) {
-
-        AggregatedStatistic stat = existingStats.get(id);
-
-        if (stat == null) {
-            stat = new AggregatedStatistic(id);
-            stat.setComputedAt(LocalDateTime.now());
-        } else if (!aggregatedData.containsKey(id)) {
-            // Reset counts if this is the first time we're processing this existing statistic
-            resetStatisticCounts(stat);
+        long getSkippedRows() {
+            return skippedRows;
         }
 
-        return stat;
-    }
-
-    private void resetStatisticCounts(AggregatedStatistic stat) {
-        stat.setTotalWins(0);
-        stat.setTotalLosses(0);
-        stat.setTotalPlayers(0);
-        stat.setTotalReplays(0);
-        stat.setComputedAt(LocalDateTime.now());
-    }
-
-    private void updateStatisticCounts(AggregatedStatistic stat, IndividualStatistic data) {
-        stat.setTotalWins(stat.getTotalWins() + data.getWins());
-        stat.setTotalLosses(stat.getTotalLosses() + data.getLosses());
-        stat.setTotalReplays(stat.getTotalReplays() + data.getTotalPlays());
-    }
-
-    private void updatePlayerCounts(
-            Map<AggregatedStatisticId, AggregatedStatistic> aggregatedData,
-            Map<AggregatedStatisticId, Set<String>> playersPerStat) {
-
-        for (Map.Entry<AggregatedStatisticId, AggregatedStatistic> entry : aggregatedData.entrySet()) {
-            AggregatedStatisticId id = entry.getKey();
-            AggregatedStatistic stat = entry.getValue();
-            Set<String> players = playersPerStat.getOrDefault(id, Collections.emptySet());
-            stat.setTotalPlayers(players.size());
+        // -1 never fits the packed key, so the row is skipped
+        private static int parseCharacterId(String characterId) {
+            try {
+                return Integer.parseInt(characterId);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
         }
     }
 
-    private Map<AggregatedStatisticId, AggregatedStatistic> loadExistingStatistics(int gameVersion, String category) {
-        List<AggregatedStatistic> existingStats =
-                aggregatedStatisticsRepository.findByIdGameVersionAndIdCategory(gameVersion, category);
-
-        return existingStats.stream()
-                .collect(Collectors.toMap(AggregatedStatistic::getId, Function.identity()));
-    }
-
-    private void saveAggregatedStatistics(Collection<AggregatedStatistic> statistics) {
-        aggregatedStatisticsRepository.saveAll(statistics);
-    }
-
     private boolean acquireProcessingLock() {
         return isProcessing.compareAndSet(false, true);
     }
@@ -1,16 +1,32 @@
 package org.ewgf.services;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 
 import org.ewgf.dtos.*;
+import org.ewgf.events.StatisticsComputedEvent;
+import org.ewgf.utils.SingleFlight;
 import org.ewgf.interfaces.RankDistributionProjection;
 import org.ewgf.interfaces.WinrateChangesProjection;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.ewgf.interfaces.CharacterAnalyticsProjection;
 import org.ewgf.interfaces.CharacterWinrateProjection;
 import org.ewgf.utils.TekkenDataMapperUtils;
 import org.ewgf.repositories.AggregatedStatisticsRepository;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
 import java.util.stream.Collectors;
 
 import static org.ewgf.utils.Constants.*;
@@ -20,13 +36,217 @@ import static org.ewgf.utils.Constants.*;
 public class StatisticsService {
 
     private final AggregatedStatisticsRepository aggregatedStatisticsRepository;
+    private final ObjectMapper objectMapper;
+    private final AtomicReference<StatisticsSnapshot> snapshot = new AtomicReference<>();
+    private final SingleFlight<String, StatisticsSnapshot> snapshotLoads;
+    private static final Duration SNAPSHOT_LOAD_MAX_WAIT = Duration.ofSeconds(30);
+    private final Counter snapshotHits;
+    private final Counter snapshotMisses;
+    private final Timer snapshotRebuildTimer;
 
     public StatisticsService(
-            AggregatedStatisticsRepository repository) {
+            AggregatedStatisticsRepository repository,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry) {
         this.aggregatedStatisticsRepository = repository;
+        this.objectMapper = objectMapper;
+        this.snapshotLoads = new SingleFlight<>("statistics-snapshot", SNAPSHOT_LOAD_MAX_WAIT, meterRegistry);
+        this.snapshotHits = Counter.builder("ewgf.statistics.snapshot.requests")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.snapshotMisses = Counter.builder("ewgf.statistics.snapshot.requests")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.snapshotRebuildTimer = Timer.builder("ewgf.statistics.snapshot.rebuild")
+                .description("Time to rebuild every statistics response from aggregated_statistics")
+                .register(meterRegistry);
     }
 
     public Map<String, CharacterWinratesDTO> getAllVersionWinrates() throws Exception {
+        return getSnapshot().getVersionWinrates();
+    }
+
+    public Map<String, CharacterPopularityDTO> getAllVersionPopularity() throws Exception {
+        return getSnapshot().getVersionPopularity();
+    }
+
+    public CharacterPopularityDTO getHomePageCharacterPopularity() throws Exception {
+        return getSnapshot().getTopPopularity();
+    }
+
+    public CharacterWinratesDTO getHomePageCharacterWinrates() throws Exception {
+        return getSnapshot().getTopWinrates();
+    }
+
+    public Optional<List<Integer>> getGameVersions() {
+        return getSnapshot().getGameVersions();
+    }
+
+    public Map<Integer, RankDistributionDTO> getAllRankDistributions() {
+        return getSnapshot().getRankDistributions();
+    }
+
+    public Map<String, List<RankWinrateChangesDTO>> getHomePageWinrateChanges() {
+        return getSnapshot().getHomePageWinrateChanges();
+    }
+
+    public Map<String, List<RankWinrateChangesDTO>> getAllWinrateChanges() {
+        return getSnapshot().getAllWinrateChanges();
+    }
+
+    public StatisticsSnapshot getSnapshot() {
+        StatisticsSnapshot current = snapshot.get();
+        if (current != null) {
+            snapshotHits.increment();
+            return current;
+        }
+        snapshotMisses.increment();
+        return rebuildIfAbsent();
+    }
+
+    @EventListener
+    public void onStatisticsComputed(StatisticsComputedEvent event) {
+        try {
+            snapshot.set(buildSnapshot(event.getComputedAt(), snapshot.get()));
+        } catch (Exception e) {
+            // keep serving the previous snapshot
+            log.error("Failed to rebuild statistics snapshot: ", e);
+        }
+    }
+
+    // Only the first caller after a cold start hits the database, concurrent callers share its result
+    private StatisticsSnapshot rebuildIfAbsent() {
+        try {
+            return snapshotLoads.execute("snapshot", () -> {
+                StatisticsSnapshot current = snapshot.get();
+                if (current != null) return current;
+
+                StatisticsSnapshot built = buildSnapshot(System.currentTimeMillis(), null);
+                // a snapshot missing a section is served but not kept, so the next request tries again
+                if (!built.isComplete()) return built;
+                // a snapshot published by a finished computation in the meantime wins
+                return snapshot.compareAndSet(null, built) ? built : snapshot.get();
+            });
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to build statistics snapshot", e);
+        }
+    }
+
+    /*
+     * Every section is built on its own: one that fails keeps its value and body from the previous
+     * snapshot, so a single failing query only leaves that endpoint stale instead of failing them all.
+     */
+    private StatisticsSnapshot buildSnapshot(long version, StatisticsSnapshot previous) {
+        return snapshotRebuildTimer.record(() -> {
+            long startTime = System.currentTimeMillis();
+            SectionBuilder sections = new SectionBuilder(version, previous);
+
+            Map<String, CharacterPopularityDTO> versionPopularity = sections.build(StatisticsSnapshot.VERSION_POPULARITY,
+                    () -> Collections.unmodifiableMap(computeAllVersionPopularity()), StatisticsSnapshot::getVersionPopularity);
+            Map<String, CharacterWinratesDTO> versionWinrates = sections.build(StatisticsSnapshot.VERSION_WINRATES,
+                    () -> Collections.unmodifiableMap(computeAllVersionWinrates()), StatisticsSnapshot::getVersionWinrates);
+            CharacterPopularityDTO topPopularity = sections.build(StatisticsSnapshot.TOP_POPULARITY,
+                    this::computeHomePageCharacterPopularity, StatisticsSnapshot::getTopPopularity);
+            CharacterWinratesDTO topWinrates = sections.build(StatisticsSnapshot.TOP_WINRATES,
+                    this::computeHomePageCharacterWinrates, StatisticsSnapshot::getTopWinrates);
+            List<Integer> gameVersions = sections.build(StatisticsSnapshot.GAME_VERSIONS,
+                    () -> aggregatedStatisticsRepository.getGameVersions().map(Collections::unmodifiableList).orElse(null),
+                    current -> current.getGameVersions().orElse(null));
+            Map<Integer, RankDistributionDTO> rankDistributions = sections.build(StatisticsSnapshot.RANK_DISTRIBUTION,
+                    () -> Collections.unmodifiableMap(computeAllRankDistributions()), StatisticsSnapshot::getRankDistributions);
+            Map<String, List<RankWinrateChangesDTO>> homePageWinrateChanges = sections.build(StatisticsSnapshot.WINRATE_CHANGES,
+                    () -> unmodifiableGroups(computeHomePageWinrateChanges()), StatisticsSnapshot::getHomePageWinrateChanges);
+            Map<String, List<RankWinrateChangesDTO>> allWinrateChanges = sections.build(StatisticsSnapshot.ALL_WINRATE_CHANGES,
+                    () -> unmodifiableGroups(computeAllWinrateChanges()), StatisticsSnapshot::getAllWinrateChanges);
+
+            StatisticsSnapshot built = new StatisticsSnapshot(
+                    version,
+                    versionPopularity,
+                    versionWinrates,
+                    topPopularity,
+                    topWinrates,
+                    Optional.ofNullable(gameVersions),
+                    rankDistributions,
+                    homePageWinrateChanges,
+                    allWinrateChanges,
+                    Map.copyOf(sections.getResponses()),
+                    sections.isComplete());
+            log.info("Rebuilt statistics snapshot {} ({} sections kept from the previous one): {} ms",
+                    version, sections.getFailures(), (System.currentTimeMillis() - startTime));
+            return built;
+        });
+    }
+
+    private class SectionBuilder {
+        private final long version;
+        private final StatisticsSnapshot previous;
+        private final Map<String, PreparedResponse> responses = new HashMap<>();
+        private int failures;
+        private boolean complete = true;
+
+        SectionBuilder(long version, StatisticsSnapshot previous) {
+            this.version = version;
+            this.previous = previous;
+        }
+
+        // A null value means there is nothing to serve, the endpoint then answers 404 as before
+        <T> T build(String endpoint, Supplier<T> compute, Function<StatisticsSnapshot, T> previousValue) {
+            try {
+                T value = compute.get();
+                if (value != null) responses.put(endpoint, prepareResponse(value, version));
+                return value;
+            } catch (RuntimeException e) {
+                failures++;
+                if (previous == null) {
+                    log.error("Failed to build statistics section {}: ", endpoint, e);
+                    complete = false;
+                    return null;
+                }
+                log.error("Failed to rebuild statistics section {}, keeping the previous one: ", endpoint, e);
+                complete &= previous.isComplete();
+                previous.getResponse(endpoint).ifPresent(response -> responses.put(endpoint, response));
+                return previousValue.apply(previous);
+            }
+        }
+
+        Map<String, PreparedResponse> getResponses() {
+            return responses;
+        }
+
+        int getFailures() {
+            return failures;
+        }
+
+        // false when a section failed and there was no earlier value to keep
+        boolean isComplete() {
+            return complete;
+        }
+    }
+
+    private static Map<String, List<RankWinrateChangesDTO>> unmodifiableGroups(Map<String, List<RankWinrateChangesDTO>> groups) {
+        Map<String, List<RankWinrateChangesDTO>> copy = new LinkedHashMap<>();
+        groups.forEach((category, changes) -> copy.put(category, Collections.unmodifiableList(changes)));
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private PreparedResponse prepareResponse(Object body, long version) {
+        try {
+            byte[] identity = objectMapper.writeValueAsBytes(body);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(identity.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(identity);
+            }
+            return new PreparedResponse(version, identity, compressed.toByteArray());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize statistics response", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Map<String, CharacterWinratesDTO> computeAllVersionWinrates() {
         List<CharacterWinrateProjection> allStats = aggregatedStatisticsRepository.findAllWinrateStats();
 
             // First group by version
@@ -86,7 +306,7 @@ public class StatisticsService {
         return new RegionalCharacterWinrateDTO(globalStats, regionalStats);
     }
 
-    public Map<String, CharacterPopularityDTO> getAllVersionPopularity() throws Exception {
+    private Map<String, CharacterPopularityDTO> computeAllVersionPopularity() {
         List<CharacterAnalyticsProjection> allStats = aggregatedStatisticsRepository.findAllCharactersByPopularity();
 
         // First group by version
@@ -143,7 +363,7 @@ public class StatisticsService {
         return new RegionalCharacterPopularityDTO(globalStats, regionalStats);
     }
 
-    public CharacterPopularityDTO getHomePageCharacterPopularity() throws Exception {
+    private CharacterPopularityDTO computeHomePageCharacterPopularity() {
         List<CharacterAnalyticsProjection> stats = aggregatedStatisticsRepository.findTopCharactersByPopularity();
         // Group by rank category
         Map<String, List<CharacterAnalyticsProjection>> statsByRank = stats.stream()
@@ -162,7 +382,7 @@ public class StatisticsService {
         return new CharacterPopularityDTO(masterRanks, advancedRanks, intermediateRanks, beginnerRanks);
     }
 
-    public CharacterWinratesDTO getHomePageCharacterWinrates() throws Exception {
+    private CharacterWinratesDTO computeHomePageCharacterWinrates() {
         List<CharacterAnalyticsProjection> stats = aggregatedStatisticsRepository.findTopCharactersByWinrate();
         // Group by rank category
         Map<String, List<CharacterAnalyticsProjection>> statsByRank = stats.stream()
@@ -181,11 +401,7 @@ public class StatisticsService {
         return new CharacterWinratesDTO(masterRanks,highRank, mediumRank, lowRank);
     }
 
-    public Optional<List<Integer>> getGameVersions() {
-        return aggregatedStatisticsRepository.getGameVersions();
-    }
-
-    public Map<Integer, RankDistributionDTO> getAllRankDistributions() {
+    private Map<Integer, RankDistributionDTO> computeAllRankDistributions() {
         Optional<List<Integer>> gameVersions = aggregatedStatisticsRepository.getGameVersions();
         List<RankDistributionProjection> distributions = aggregatedStatisticsRepository.getAllRankDistributions(gameVersions.get());
         Map<Integer, RankDistributionDTO> result = new TreeMap<>(Collections.reverseOrder());
@@ -198,7 +414,7 @@ public class StatisticsService {
         return result;
     }
 
-    public Map<String, List<RankWinrateChangesDTO>> getHomePageWinrateChanges() {
+    private Map<String, List<RankWinrateChangesDTO>> computeHomePageWinrateChanges() {
         List<WinrateChangesProjection> projections = aggregatedStatisticsRepository.getWinrateChanges();
         List<RankWinrateChangesDTO> changes = projections.stream()
                 .map(proj -> new RankWinrateChangesDTO(
@@ -210,7 +426,7 @@ public class StatisticsService {
         return RankWinrateChangesDTO.groupByRankCategory(changes);
     }
 
-    public Map<String, List<RankWinrateChangesDTO>> getAllWinrateChanges() {
+    private Map<String, List<RankWinrateChangesDTO>> computeAllWinrateChanges() {
         List<WinrateChangesProjection> projections = aggregatedStatisticsRepository.getAllWinrateChanges();
         List<RankWinrateChangesDTO> changes = projections.stream()
                 .map(proj -> new RankWinrateChangesDTO(
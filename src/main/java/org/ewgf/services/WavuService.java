@@ -1,11 +1,14 @@
 package org.ewgf.services;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.ewgf.utils.DateTimeUtils;
 import org.ewgf.utils.EventPublisherUtils;
+import org.ewgf.utils.RateLimiter;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
@@ -36,8 +39,7 @@ public class WavuService implements InitializingBean, DisposableBean {
     private static final int BACKPRESSURE_CHECK_DELAY_MILLIS = 60000; // 1 minute
     private static final int NEW_REPLAYS_DELAY_MILLIS = 30000;// 30 seconds
     private static final int NEW_REPLAYS_DELAY_SECONDS = 30;
-    private static final int TIME_STEP = 700;
-    private static final int TIME_STEP_OVERLAP = 60; // Overlap to ensure no battles are missed
+    private static final String PARALLEL_BACKFILL_MODE = "parallel";
     private static long OLDEST_HISTORICAL_TIMESTAMP = 1711548580L;
 
     private final RabbitTemplate rabbitTemplate;
@@ -48,6 +50,11 @@ public class WavuService implements InitializingBean, DisposableBean {
     private final TaskScheduler taskScheduler;
     private final TekkenStatsSummaryRepository tekkenStatsSummaryRepository;
     private final EventPublisherUtils eventPublisherUtils;
+    private final BattlePartitionRouter battlePartitionRouter;
+    private final RateLimiter wavuRateLimiter;
+    private final MeterRegistry meterRegistry;
+    private AdaptiveFetchWindow liveFetchWindow;
+    private RecentlySentBattleFilter liveDuplicateFilter;
 
     private ScheduledFuture<?> scheduledTask;
     private boolean isFetchingNewReplays = false;
@@ -61,6 +68,30 @@ public class WavuService implements InitializingBean, DisposableBean {
     @Value("${spring.profiles.active:}")
     private String activeProfile;
 
+    // "sequential" = walk back one window at a time before fetching new replays,
+    // "parallel" = fetch new replays right away and leave history to HistoricalBackfillService
+    @Value("${wavu.backfill.mode:sequential}")
+    private String backfillMode;
+
+    // Battles per response at which the API truncates, treated as "window may be incomplete"
+    @Value("${wavu.fetch-window.page-limit:500}")
+    private int pageLimit;
+
+    @Value("${wavu.fetch-window.min-overlap-seconds:10}")
+    private int minOverlapSeconds;
+
+    @Value("${wavu.fetch-window.max-overlap-seconds:60}")
+    private int maxOverlapSeconds;
+
+    @Value("${wavu.duplicate-filter.enabled:true}")
+    private boolean duplicateFilterEnabled;
+
+    @Value("${wavu.duplicate-filter.horizon-ms:600000}")
+    private long duplicateFilterHorizonMillis;
+
+    @Value("${wavu.duplicate-filter.max-ids-per-generation:200000}")
+    private int duplicateFilterMaxIds;
+
     public WavuService(
             RabbitTemplate rabbitTemplate,
             BackpressureManager backpressureManager,
@@ -69,7 +100,10 @@ public class WavuService implements InitializingBean, DisposableBean {
             TaskScheduler taskScheduler,
             TekkenStatsSummaryRepository tekkenStatsSummaryRepository,
             RabbitMQConfig rabbitMQConfig,
-            EventPublisherUtils eventPublisherUtils
+            EventPublisherUtils eventPublisherUtils,
+            BattlePartitionRouter battlePartitionRouter,
+            @Qualifier("wavuRateLimiter") RateLimiter wavuRateLimiter,
+            MeterRegistry meterRegistry
     ) {
         this.rabbitTemplate = rabbitTemplate;
         this.backpressureManager = backpressureManager;
@@ -79,10 +113,15 @@ public class WavuService implements InitializingBean, DisposableBean {
         this.tekkenStatsSummaryRepository = tekkenStatsSummaryRepository;
         this.rabbitMQConfig = rabbitMQConfig;
         this.eventPublisherUtils = eventPublisherUtils;
+        this.battlePartitionRouter = battlePartitionRouter;
+        this.wavuRateLimiter = wavuRateLimiter;
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
     public void afterPropertiesSet() {
+        liveFetchWindow = newFetchWindow("live");
+        liveDuplicateFilter = newDuplicateFilter("live");
         initializeService();
         scheduleNextExecution(0); // Start immediately
     }
@@ -100,7 +139,9 @@ public class WavuService implements InitializingBean, DisposableBean {
             Optional<Battle> newestBattleInDatabase = battleRepository.findNewestRankedBattle();
             checkIfActiveProfileIsDev(activeProfile);
 
-            if (oldestBattleInDatabase.isPresent() && newestBattleInDatabase.isPresent() && isDatabaseFullyPreloaded(oldestBattleInDatabase)) {
+            if (isParallelBackfill()) {
+                initializeForParallelBackfill(newestBattleInDatabase);
+            } else if (oldestBattleInDatabase.isPresent() && newestBattleInDatabase.isPresent() && isDatabaseFullyPreloaded(oldestBattleInDatabase)) {
                 initializeForPreloadedDatabase(newestBattleInDatabase.get());
             } else if (oldestBattleInDatabase.isPresent()) {
                 initializeForPartiallyLoadedDatabase(oldestBattleInDatabase.get());
@@ -151,7 +192,7 @@ public class WavuService implements InitializingBean, DisposableBean {
         try {
             List<Battle> response = fetchBattlesFromApi(currentFetchTimestamp);
             processApiResponse(response, readableTimestamp);
-            currentFetchTimestamp -= (TIME_STEP - TIME_STEP_OVERLAP);
+            currentFetchTimestamp = liveFetchWindow.nextBefore(currentFetchTimestamp, response);
         } catch (Exception e) {
             log.error("Error fetching new replays: {}", e.getMessage());
         }
@@ -176,7 +217,7 @@ public class WavuService implements InitializingBean, DisposableBean {
             List<Battle> response = fetchBattlesFromApi(currentFetchTimestamp);
             processApiResponse(response, readableTimestamp);
 
-            currentFetchTimestamp -= (TIME_STEP - TIME_STEP_OVERLAP); // Overlap to ensure no battles are missed
+            currentFetchTimestamp = liveFetchWindow.nextBefore(currentFetchTimestamp, response);
 
             if (currentFetchTimestamp < OLDEST_HISTORICAL_TIMESTAMP) {
                 log.info("Timestamp {} below oldest historical timestamp {}. Switching to forward fetching",
@@ -188,7 +229,14 @@ public class WavuService implements InitializingBean, DisposableBean {
         }
     }
 
-    private List<Battle> fetchBattlesFromApi(long timestamp) {
+    List<Battle> fetchBattlesFromApi(long timestamp) {
+        try {
+            wavuRateLimiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the Wavu rate limiter", e);
+        }
+
         String url = UriComponentsBuilder.fromUriString(wavuApiUrl)
                 .queryParam("before", timestamp)
                 .toUriString();
@@ -218,19 +266,37 @@ public class WavuService implements InitializingBean, DisposableBean {
         isFetchingNewReplays = true;
     }
 
-    private void processApiResponse(List<Battle> battles, String readableTimestamp) {
+    void processApiResponse(List<Battle> battles, String readableTimestamp) {
+        processApiResponse(battles, readableTimestamp, liveDuplicateFilter);
+    }
+
+    void processApiResponse(List<Battle> battles, String readableTimestamp, RecentlySentBattleFilter duplicateFilter) {
         if (battles == null || battles.isEmpty()) return;
 
         log.debug("Received response from Wavu API");
+        // the overlap with the previous window was already sent
+        List<Battle> unsentBattles = duplicateFilter.filterUnsent(battles);
+        if (unsentBattles.isEmpty()) return;
+
         long startTime = System.currentTimeMillis();
-        sendToRabbitMQ(battles, readableTimestamp + " UTC");
+        sendToRabbitMQ(unsentBattles, readableTimestamp + " UTC");
+        duplicateFilter.markSent(unsentBattles);
         log.debug("Sending data to RabbitMQ took {} ms", (System.currentTimeMillis() - startTime));
     }
 
     void sendToRabbitMQ(List<Battle> battles, String dateAndTime) {
+        if (battlePartitionRouter.isEnabled()) {
+            battlePartitionRouter.partition(battles).forEach((partition, partitionBattles) ->
+                    sendToRabbitMQ(BattlePartitionRouter.routingKey(partition), partitionBattles, dateAndTime));
+            return;
+        }
+        sendToRabbitMQ(rabbitMQConfig.getRoutingKey(), battles, dateAndTime);
+    }
+
+    private void sendToRabbitMQ(String routingKey, List<Battle> battles, String dateAndTime) {
         rabbitTemplate.convertAndSend(
                 rabbitMQConfig.getExchangeName(),
-                rabbitMQConfig.getRoutingKey(),
+                routingKey,
                 battles,
                 msg -> {
                     msg.getMessageProperties()
@@ -261,6 +327,32 @@ public class WavuService implements InitializingBean, DisposableBean {
         currentFetchTimestamp = Instant.now().getEpochSecond();
     }
 
+    private void initializeForParallelBackfill(Optional<Battle> newestBattle) {
+        if (newestBattle.isEmpty()) tekkenStatsSummaryRepository.initializeStatsSummaryTable();
+        isFetchingNewReplays = true;
+        newestBattleTimestampInDatabase = newestBattle.map(Battle::getBattleAt).orElse(Instant.now().getEpochSecond());
+        currentFetchTimestamp = Instant.now().getEpochSecond();
+        log.info("Parallel backfill mode. Fetching new battles, history is backfilled separately.");
+    }
+
+    // One per walker, the window adapts to what that walker's cursor sees
+    AdaptiveFetchWindow newFetchWindow(String fetcher) {
+        return new AdaptiveFetchWindow(pageLimit, minOverlapSeconds, maxOverlapSeconds, meterRegistry, fetcher);
+    }
+
+    RecentlySentBattleFilter newDuplicateFilter(String fetcher) {
+        return new RecentlySentBattleFilter(duplicateFilterEnabled, duplicateFilterHorizonMillis,
+                duplicateFilterMaxIds, meterRegistry, fetcher);
+    }
+
+    boolean isParallelBackfill() {
+        return PARALLEL_BACKFILL_MODE.equals(backfillMode);
+    }
+
+    static long getOldestHistoricalTimestamp() {
+        return OLDEST_HISTORICAL_TIMESTAMP;
+    }
+
     private void initializeForPartiallyLoadedDatabase(Battle oldestBattle) {
         currentFetchTimestamp = oldestBattle.getBattleAt();
         log.info("Continuing historical data fetching, starting at: {}", currentFetchTimestamp);
@@ -0,0 +1,16 @@
+package org.ewgf.utils;
+
+public class PlayerIdUtils {
+
+    public static final int PLAYER_ID_LENGTH = 18;
+
+    public PlayerIdUtils() {}
+
+    // Replays can carry player ids with their leading zeros stripped, every table stores the 18 character form
+    public static String normalize(String playerId) {
+        if (playerId == null || playerId.length() >= PLAYER_ID_LENGTH) {
+            return playerId;
+        }
+        return "0".repeat(PLAYER_ID_LENGTH - playerId.length()) + playerId;
+    }
+}
@@ -0,0 +1,29 @@
+package org.ewgf.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Spaces calls evenly at a fixed rate, shared by every thread that calls acquire(). Each caller reserves
+ * the next free slot and sleeps outside the lock until it arrives, so waiting threads never block each other.
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private long nextFreeAt = System.nanoTime();
+
+    public RateLimiter(double permitsPerSecond) {
+        if (permitsPerSecond <= 0) throw new IllegalArgumentException("permitsPerSecond must be positive");
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+    }
+
+    public void acquire() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextFreeAt);
+            nextFreeAt = slot + intervalNanos;
+            waitNanos = slot - now;
+        }
+        if (waitNanos > 0) TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+}
@@ -0,0 +1,72 @@
+package org.ewgf.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+
+/*
+ * Runs at most one load per key at a time. Callers that arrive while a load for their key is
+ * in flight wait for it and get the same result (or exception) instead of repeating the work.
+ * They wait at most maxWait and then fail with a TimeoutException; the load itself keeps running.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long maxWaitNanos;
+    private final Counter executions;
+    private final Counter deduplicated;
+    private final Counter timedOut;
+
+    public SingleFlight(String name, Duration maxWait, MeterRegistry meterRegistry) {
+        this.maxWaitNanos = maxWait.toNanos();
+        this.executions = Counter.builder("ewgf.singleflight.requests")
+                .tag("name", name)
+                .tag("result", "executed")
+                .register(meterRegistry);
+        this.deduplicated = Counter.builder("ewgf.singleflight.requests")
+                .tag("name", name)
+                .tag("result", "deduplicated")
+                .register(meterRegistry);
+        this.timedOut = Counter.builder("ewgf.singleflight.requests")
+                .tag("name", name)
+                .tag("result", "timeout")
+                .register(meterRegistry);
+    }
+
+    public V execute(K key, Callable<V> loader) throws Exception {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            deduplicated.increment();
+            return await(existing);
+        }
+
+        executions.increment();
+        try {
+            V result = loader.call();
+            call.complete(result);
+            return result;
+        } catch (Throwable t) {
+            // Errors too, or the waiters would only be released by their timeout
+            call.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    private V await(CompletableFuture<V> call) throws Exception {
+        try {
+            return call.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            if (e.getCause() instanceof Error error) throw error;
+            throw e;
+        } catch (TimeoutException e) {
+            timedOut.increment();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.ewgf.utils;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Objects;
+
+/*
+ * Waits out transactions that may have read a switch (a flag, a row) before it changed. Take xmax right after
+ * the switch is visible: once the oldest running transaction id reaches it, every transaction that had an id
+ * by then has committed or rolled back.
+ */
+public class TransactionIdUtils {
+
+    private static final long POLL_MILLIS = 100;
+
+    private static final String SNAPSHOT_XMAX_SQL = "SELECT pg_snapshot_xmax(pg_current_snapshot())::text::bigint";
+    private static final String SNAPSHOT_XMIN_SQL = "SELECT pg_snapshot_xmin(pg_current_snapshot())::text::bigint";
+
+    public TransactionIdUtils() {}
+
+    public static long currentXmax(JdbcTemplate jdbcTemplate) {
+        return Objects.requireNonNull(jdbcTemplate.queryForObject(SNAPSHOT_XMAX_SQL, Long.class));
+    }
+
+    public static void awaitTransactionsBefore(JdbcTemplate jdbcTemplate, long xmax) {
+        while (Objects.requireNonNull(jdbcTemplate.queryForObject(SNAPSHOT_XMIN_SQL, Long.class)) < xmax) {
+            try {
+                Thread.sleep(POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for older transactions", e);
+            }
+        }
+    }
+}
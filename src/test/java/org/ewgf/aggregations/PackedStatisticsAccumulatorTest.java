@@ -0,0 +1,82 @@
+package org.ewgf.aggregations;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PackedStatisticsAccumulatorTest {
+
+    private record Cell(int gameVersion, int characterId, int danRank, int regionId, boolean overall) {}
+
+    @Test
+    void matchesHashMapReferenceOn200kRows() {
+        Random random = new Random(2024);
+        PackedStatisticsAccumulator accumulator = new PackedStatisticsAccumulator(16);
+        Map<Cell, long[]> reference = new HashMap<>();
+
+        for (int i = 0; i < 200_000; i++) {
+            Cell cell = new Cell(10000 + random.nextInt(4), random.nextInt(40), random.nextInt(30),
+                    random.nextInt(6), random.nextBoolean());
+            int wins = random.nextInt(500);
+            int losses = random.nextInt(500);
+
+            accumulator.add(PackedStatisticsAccumulator.packKey(
+                    cell.gameVersion(), cell.characterId(), cell.danRank(), cell.regionId(), cell.overall()), wins, losses);
+            long[] counts = reference.computeIfAbsent(cell, k -> new long[4]);
+            counts[0] += wins;
+            counts[1] += losses;
+            counts[2] += 1;
+            counts[3] += wins + losses;
+        }
+
+        Map<Cell, long[]> accumulated = new HashMap<>();
+        accumulator.forEach((gameVersion, characterId, danRank, regionId, overall, wins, losses, players, replays) ->
+                assertNull(accumulated.put(new Cell(gameVersion, characterId, danRank, regionId, overall),
+                        new long[]{wins, losses, players, replays})));
+
+        assertEquals(reference.size(), accumulator.size());
+        assertEquals(reference.keySet(), accumulated.keySet());
+        reference.forEach((cell, counts) -> assertArrayEquals(counts, accumulated.get(cell), cell.toString()));
+    }
+
+    @Test
+    void packedKeyRoundTripsTheLargestValues() {
+        int gameVersion = (1 << 24) - 1;
+        int characterId = (1 << 16) - 1;
+        int danRank = (1 << 8) - 1;
+        int regionId = (1 << 8) - 1;
+        PackedStatisticsAccumulator accumulator = new PackedStatisticsAccumulator(1);
+        accumulator.add(PackedStatisticsAccumulator.packKey(gameVersion, characterId, danRank, regionId, true), 3, 4);
+
+        List<Cell> cells = new ArrayList<>();
+        accumulator.forEach((version, character, rank, region, overall, wins, losses, players, replays) -> {
+            cells.add(new Cell(version, character, rank, region, overall));
+            assertEquals(3, wins);
+            assertEquals(4, losses);
+            assertEquals(1, players);
+            assertEquals(7, replays);
+        });
+        assertEquals(List.of(new Cell(gameVersion, characterId, danRank, regionId, true)), cells);
+    }
+
+    @Test
+    void categoriesOfTheSameCellStaySeparate() {
+        PackedStatisticsAccumulator accumulator = new PackedStatisticsAccumulator(4);
+        accumulator.add(PackedStatisticsAccumulator.packKey(10901, 8, 20, 1, true), 1, 0);
+        accumulator.add(PackedStatisticsAccumulator.packKey(10901, 8, 20, 1, false), 0, 1);
+        assertEquals(2, accumulator.size());
+    }
+
+    @Test
+    void outOfRangeFieldsCannotBePacked() {
+        assertTrue(PackedStatisticsAccumulator.canPack(10901, 8, 20, 1));
+        assertFalse(PackedStatisticsAccumulator.canPack(1 << 24, 8, 20, 1));
+        assertFalse(PackedStatisticsAccumulator.canPack(10901, 1 << 16, 20, 1));
+        assertFalse(PackedStatisticsAccumulator.canPack(10901, 8, 256, 1));
+        assertFalse(PackedStatisticsAccumulator.canPack(10901, 8, 20, -1));
+        assertFalse(PackedStatisticsAccumulator.canPack(10901, -1, 20, 1));
+        assertThrows(IllegalArgumentException.class, () -> PackedStatisticsAccumulator.packKey(10901, -1, 20, 1, true));
+    }
+}
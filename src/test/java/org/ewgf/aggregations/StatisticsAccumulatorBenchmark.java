@@ -0,0 +1,91 @@
+package org.ewgf.aggregations;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.ewgf.utils.Constants.OVERALL_CATEGORY;
+
+/*
+ * Aggregating one game version's character_stats rows: the previous HashMap of AggregatedStatisticId to
+ * AggregatedStatistic against PackedStatisticsAccumulator. Run with
+ *   mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+ *       "-Dexec.args=-cp %classpath org.ewgf.aggregations.StatisticsAccumulatorBenchmark"
+ * or from the IDE (JMH forks, so exec:java's in-process classpath does not work).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatisticsAccumulatorBenchmark {
+
+    @Param({"200000", "2000000"})
+    private int rows;
+
+    private String[] characterIds;
+    private int[] characterNumbers;
+    private int[] danRanks;
+    private int[] regionIds;
+    private int[] wins;
+    private int[] losses;
+
+    @Setup
+    public void generateRows() {
+        Random random = new Random(42);
+        characterIds = new String[rows];
+        characterNumbers = new int[rows];
+        danRanks = new int[rows];
+        regionIds = new int[rows];
+        wins = new int[rows];
+        losses = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            characterNumbers[i] = random.nextInt(40);
+            characterIds[i] = String.valueOf(characterNumbers[i]);
+            danRanks[i] = random.nextInt(30);
+            regionIds[i] = random.nextInt(6);
+            wins[i] = random.nextInt(300);
+            losses[i] = random.nextInt(300);
+        }
+    }
+
+    @Benchmark
+    public void hashMap(Blackhole blackhole) {
+        Map<AggregatedStatisticId, AggregatedStatistic> aggregated = new HashMap<>();
+        for (int i = 0; i < rows; i++) {
+            AggregatedStatisticId id = new AggregatedStatisticId(10901, characterIds[i], danRanks[i], OVERALL_CATEGORY, regionIds[i]);
+            AggregatedStatistic stat = aggregated.computeIfAbsent(id, AggregatedStatistic::new);
+            stat.setTotalWins(stat.getTotalWins() + wins[i]);
+            stat.setTotalLosses(stat.getTotalLosses() + losses[i]);
+            stat.setTotalReplays(stat.getTotalReplays() + wins[i] + losses[i]);
+            stat.setTotalPlayers(stat.getTotalPlayers() + 1);
+        }
+        blackhole.consume(aggregated);
+    }
+
+    @Benchmark
+    public void packed(Blackhole blackhole) {
+        PackedStatisticsAccumulator accumulator = new PackedStatisticsAccumulator(4096);
+        for (int i = 0; i < rows; i++) {
+            // the production collector parses the character id from the row as well
+            int characterId = Integer.parseInt(characterIds[i]);
+            accumulator.add(PackedStatisticsAccumulator.packKey(10901, characterId, danRanks[i], regionIds[i], true),
+                    wins[i], losses[i]);
+        }
+        blackhole.consume(accumulator);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StatisticsAccumulatorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,82 @@
+package org.ewgf.controllers;
+
+import org.ewgf.dtos.PreparedResponse;
+import org.ewgf.dtos.StatisticsSnapshot;
+import org.ewgf.services.StatisticsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class StatisticsControllerTest {
+
+    private static final byte[] IDENTITY = "{}".getBytes();
+    private static final byte[] GZIP = {31, -117, 8};
+
+    private StatisticsController controller;
+
+    @BeforeEach
+    void setUp() {
+        StatisticsSnapshot snapshot = mock(StatisticsSnapshot.class);
+        when(snapshot.getResponse(StatisticsSnapshot.GAME_VERSIONS))
+                .thenReturn(Optional.of(new PreparedResponse(7L, IDENTITY, GZIP)));
+        StatisticsService statisticsService = mock(StatisticsService.class);
+        when(statisticsService.getSnapshot()).thenReturn(snapshot);
+        controller = new StatisticsController(null, statisticsService, null);
+    }
+
+    @Test
+    void acceptEncodingHonoursQValues() {
+        assertTrue(StatisticsController.acceptsGzip("gzip, deflate, br"));
+        assertTrue(StatisticsController.acceptsGzip("br;q=1.0, gzip;q=0.8"));
+        assertTrue(StatisticsController.acceptsGzip("*"));
+        assertTrue(StatisticsController.acceptsGzip("X-GZIP"));
+        assertFalse(StatisticsController.acceptsGzip(null));
+        assertFalse(StatisticsController.acceptsGzip("identity"));
+        assertFalse(StatisticsController.acceptsGzip("gzip;q=0"));
+        assertFalse(StatisticsController.acceptsGzip("gzip; q=0.000, br"));
+        assertFalse(StatisticsController.acceptsGzip("*, gzip;q=0"));
+        assertFalse(StatisticsController.acceptsGzip("*;q=0"));
+    }
+
+    @Test
+    void gzipAndIdentityBodiesHaveDistinctETags() {
+        ResponseEntity<byte[]> gzip = controller.getGameVersions(request("gzip", null));
+        assertEquals("\"stats-7-gzip\"", gzip.getHeaders().getETag());
+        assertEquals("gzip", gzip.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertSame(GZIP, gzip.getBody());
+
+        ResponseEntity<byte[]> identity = controller.getGameVersions(request("gzip;q=0", null));
+        assertEquals("\"stats-7\"", identity.getHeaders().getETag());
+        assertNull(identity.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertSame(IDENTITY, identity.getBody());
+        assertTrue(identity.getHeaders().getVary().contains(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    @Test
+    void validatorOfTheOtherEncodingIsNotAMatch() {
+        ResponseEntity<byte[]> notModified = controller.getGameVersions(request("gzip", "\"stats-7-gzip\""));
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertTrue(notModified.getHeaders().getVary().contains(HttpHeaders.ACCEPT_ENCODING));
+        assertEquals(HttpStatus.OK,
+                controller.getGameVersions(request("identity", "\"stats-7-gzip\"")).getStatusCode());
+        assertEquals(HttpStatus.OK,
+                controller.getGameVersions(request("gzip", "\"stats-7\"")).getStatusCode());
+    }
+
+    private static ServletWebRequest request(String acceptEncoding, String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/statistics/gameVersions");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        if (ifNoneMatch != null) request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+}
@@ -0,0 +1,128 @@
+package org.ewgf.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.ewgf.interfaces.PlayerSummaryProjection;
+import org.ewgf.models.Player;
+import org.ewgf.support.PostgresContainers;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Statements Hibernate prepares for each player read path, counted with its statistics: the profile
+ * must fetch character_stats with the player, and search and metadata must not touch character_stats.
+ */
+// ddl-auto=none: init.sql's tekken_stats_summary still has total_replays where the entity maps total_ranked_replays
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.hibernate.ddl-auto=none"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class PlayerRepositoryQueryCountTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = PostgresContainers.withSchema();
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    private static final String POLARIS_ID = "3abcdefghijk";
+
+    @Autowired
+    private PlayerRepository playerRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 1; i <= 30; i++) {
+            String playerId = String.format("%018d", i);
+            jdbcTemplate.update("INSERT INTO players (player_id, polaris_id, name, region_id, latest_battle, " +
+                            "tekken_power, main_character_id, main_dan_rank) VALUES (?, ?, ?, 1, ?, 1000, '8', 20)",
+                    playerId, i == 1 ? POLARIS_ID : "3player" + i, "Kazuya" + i, 1_700_000_000L + i);
+            for (int character = 0; character < 5; character++) {
+                for (int gameVersion = 10901; gameVersion <= 10903; gameVersion++) {
+                    jdbcTemplate.update("INSERT INTO character_stats (player_id, character_id, dan_rank, game_version, " +
+                                    "latest_battle, wins, losses) VALUES (?, ?, 20, ?, 1700000000, 10, 5)",
+                            playerId, String.valueOf(character), gameVersion);
+                }
+            }
+        }
+        entityManager.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void profileLoadsThePlayerAndItsCharacterStatsInOneStatement() {
+        Player player = playerRepository.findByPolarisId(POLARIS_ID).orElseThrow();
+        assertEquals(15, player.getCharacterStats().size());
+        player.getCharacterStats().values().forEach(stats -> assertEquals(10, stats.getWins()));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void characterStatsAreNotLoadedUnlessAsked() {
+        Player player = playerRepository.findById(String.format("%018d", 1)).orElseThrow();
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        // touching the lazy collection outside the profile path costs a second statement
+        assertEquals(15, player.getCharacterStats().size());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void searchIsOneStatementWhateverTheNumberOfResults() {
+        List<PlayerSummaryProjection> players = playerRepository.searchByNameOrPolarisId("kazuya", "kazuya", 20).orElseThrow();
+        assertEquals(20, players.size());
+        players.forEach(player -> assertNotNull(player.getMainCharacterId()));
+
+        List<PlayerSummaryProjection> prefixMatches = playerRepository.searchByNamePrefix("ka", "ka", 20).orElseThrow();
+        assertEquals(20, prefixMatches.size());
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+    }
+
+    @Test
+    void metadataIsOneStatement() {
+        PlayerSummaryProjection summary = playerRepository.findSummaryByPolarisId(POLARIS_ID).orElseThrow();
+        assertEquals("Kazuya1", summary.getName());
+        assertEquals(20, summary.getMainDanRank());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(0, statistics.getCollectionLoadCount());
+    }
+}
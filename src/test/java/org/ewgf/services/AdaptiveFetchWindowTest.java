@@ -0,0 +1,111 @@
+package org.ewgf.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.ewgf.models.Battle;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.ewgf.services.AdaptiveFetchWindow.API_WINDOW_SECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveFetchWindowTest {
+
+    private static final int PAGE_LIMIT = 10;
+    private static final int MIN_OVERLAP = 10;
+    private static final int MAX_OVERLAP = 60;
+    private static final long BEFORE = 1_700_000_000L;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AdaptiveFetchWindow window =
+            new AdaptiveFetchWindow(PAGE_LIMIT, MIN_OVERLAP, MAX_OVERLAP, meterRegistry, "test");
+
+    @Test
+    void fullPageContinuesFromItsOldestBattle() {
+        List<Battle> page = battlesAt(BEFORE - 300, BEFORE);
+
+        assertEquals(BEFORE - 300, window.nextBefore(BEFORE, page));
+        assertEquals(1, meterRegistry.get("ewgf.wavu.fetch.truncated").counter().count());
+    }
+
+    @Test
+    void pageFilledWithinOneSecondStepsPastIt() {
+        List<Battle> page = battlesAt(BEFORE, BEFORE);
+
+        assertEquals(BEFORE - 1, window.nextBefore(BEFORE, page));
+    }
+
+    @Test
+    void sparsePagesShrinkTheOverlapDownToTheMinimum() {
+        long before = BEFORE;
+        List<Long> steps = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            long next = window.nextBefore(before, battles(1));
+            steps.add(before - next);
+            before = next;
+        }
+
+        // overlap 60 -> 30 -> 15 -> 10 (minimum) -> 10
+        assertEquals(List.of(
+                (long) API_WINDOW_SECONDS - 30,
+                (long) API_WINDOW_SECONDS - 15,
+                (long) API_WINDOW_SECONDS - MIN_OVERLAP,
+                (long) API_WINDOW_SECONDS - MIN_OVERLAP,
+                (long) API_WINDOW_SECONDS - MIN_OVERLAP), steps);
+    }
+
+    @Test
+    void densePageGrowsTheOverlapBackToTheMaximum() {
+        long before = BEFORE;
+        for (int i = 0; i < 4; i++) before = window.nextBefore(before, Collections.emptyList());
+
+        long next = window.nextBefore(before, battles(8));
+
+        assertEquals(API_WINDOW_SECONDS - MAX_OVERLAP, before - next);
+    }
+
+    @Test
+    void mediumPageKeepsTheOverlap() {
+        long before = window.nextBefore(BEFORE, null);  // overlap 30
+
+        long next = window.nextBefore(before, battles(5));
+
+        assertEquals(API_WINDOW_SECONDS - 30, before - next);
+    }
+
+    @Test
+    void cursorAlwaysMovesBackwards() {
+        long before = BEFORE;
+        List<List<Battle>> responses = List.of(
+                battlesAt(BEFORE, BEFORE), battles(0), battles(9), battlesAt(BEFORE - 700, BEFORE), battles(2));
+        for (List<Battle> response : responses) {
+            long next = window.nextBefore(before, response);
+            assertTrue(next < before);
+            assertTrue(before - next <= API_WINDOW_SECONDS);
+            before = next;
+        }
+    }
+
+    // a full page with battle_at spread evenly over [oldest, newest]
+    private static List<Battle> battlesAt(long oldest, long newest) {
+        List<Battle> battles = new ArrayList<>();
+        for (int i = 0; i < PAGE_LIMIT; i++) {
+            Battle battle = new Battle();
+            battle.setBattleAt(newest - (newest - oldest) * i / (PAGE_LIMIT - 1));
+            battles.add(battle);
+        }
+        return battles;
+    }
+
+    private static List<Battle> battles(int count) {
+        List<Battle> battles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Battle battle = new Battle();
+            battle.setBattleAt(BEFORE - i);
+            battles.add(battle);
+        }
+        return battles;
+    }
+}
@@ -0,0 +1,116 @@
+package org.ewgf.services;
+
+import org.ewgf.models.Battle;
+import org.ewgf.utils.PlayerIdUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BattlePartitionRouterTest {
+
+    private static final int PARTITIONS = 4;
+
+    private final BattlePartitionRouter router = new BattlePartitionRouter(true, PARTITIONS);
+
+    @Test
+    void labelsAreOnePerPartition() {
+        assertEquals(List.of("0", "1", "2", "3"), router.getPartitionLabels());
+    }
+
+    @Test
+    void noPlayerIsWrittenByTwoPartitions() {
+        // a small pool of players, so the same player shows up in many battles, on both sides and padded or not
+        Random random = new Random(7);
+        List<Battle> battles = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            battles.add(battle(String.valueOf(i), randomPlayerId(random), randomPlayerId(random)));
+        }
+
+        Map<String, List<Battle>> partitioned = router.partition(battles);
+
+        Map<String, Set<String>> writersByPlayer = new HashMap<>();
+        Map<String, Integer> writersBySide = new HashMap<>();
+        partitioned.forEach((label, partitionBattles) -> {
+            for (Battle battle : partitionBattles) {
+                for (int playerNumber = 1; playerNumber <= 2; playerNumber++) {
+                    String playerId = playerNumber == 1 ? battle.getPlayer1UserId() : battle.getPlayer2UserId();
+                    if (!router.writesPlayer(label, playerId)) continue;
+                    writersByPlayer.computeIfAbsent(PlayerIdUtils.normalize(playerId), k -> new HashSet<>()).add(label);
+                    writersBySide.merge(battle.getBattleId() + ":" + playerNumber, 1, Integer::sum);
+                }
+            }
+        });
+
+        writersByPlayer.forEach((playerId, labels) ->
+                assertEquals(1, labels.size(), "player " + playerId + " is written by partitions " + labels));
+        // and every side of every battle is applied by exactly one of the partitions it was sent to
+        assertEquals(battles.size() * 2, writersBySide.size());
+        writersBySide.forEach((side, writers) -> assertEquals(1, writers, "side " + side));
+    }
+
+    @Test
+    void battleGoesToThePartitionOfEachPlayer() {
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            Battle battle = battle(String.valueOf(i), randomPlayerId(random), randomPlayerId(random));
+            Set<String> expected = new HashSet<>(List.of(
+                    router.labelOf(battle.getPlayer1UserId()), router.labelOf(battle.getPlayer2UserId())));
+            assertEquals(expected, router.partition(List.of(battle)).keySet());
+        }
+    }
+
+    @Test
+    void zeroPaddingDoesNotChangeThePartition() {
+        assertEquals(router.labelOf("123456789"), router.labelOf("000000000123456789"));
+        assertEquals(router.labelOf("987654321"), router.labelOf("000000000987654321"));
+    }
+
+    @Test
+    void duplicatesOfABattleLandOnTheSamePartitions() {
+        Battle battle = battle("dup", "000000000000000042", "000000000000000077");
+        Map<String, List<Battle>> partitioned = router.partition(List.of(battle, battle, battle));
+        for (List<Battle> partitionBattles : partitioned.values()) {
+            assertEquals(3, partitionBattles.size());
+        }
+    }
+
+    @Test
+    void selfPlayIsSentToOnePartitionOnce() {
+        Battle battle = battle("self", "000000000000000042", "42");
+        Map<String, List<Battle>> partitioned = router.partition(List.of(battle));
+        assertEquals(1, partitioned.size());
+        assertEquals(1, partitioned.values().iterator().next().size());
+    }
+
+    @Test
+    void everyPartitionWritesAnEvenShareOfPlayers() {
+        Random random = new Random(11);
+        Map<String, Integer> playersByLabel = new HashMap<>();
+        for (int i = 0; i < 40_000; i++) {
+            String playerId = String.format("%018d", random.nextLong(1_000_000_000L));
+            playersByLabel.merge(router.labelOf(playerId), 1, Integer::sum);
+        }
+
+        assertEquals(new HashSet<>(router.getPartitionLabels()), playersByLabel.keySet());
+        int expected = 40_000 / PARTITIONS;
+        for (int players : playersByLabel.values()) {
+            assertTrue(Math.abs(players - expected) < expected / 10,
+                    "partition player count " + players + " is far from " + expected);
+        }
+    }
+
+    private static String randomPlayerId(Random random) {
+        String playerId = String.valueOf(1 + random.nextInt(500));
+        return random.nextBoolean() ? PlayerIdUtils.normalize(playerId) : playerId;
+    }
+
+    private static Battle battle(String battleId, String player1Id, String player2Id) {
+        Battle battle = new Battle();
+        battle.setBattleId(battleId);
+        battle.setPlayer1UserId(player1Id);
+        battle.setPlayer2UserId(player2Id);
+        return battle;
+    }
+}
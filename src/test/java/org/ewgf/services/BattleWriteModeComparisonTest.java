@@ -0,0 +1,153 @@
+package org.ewgf.services;
+
+import org.ewgf.models.Battle;
+import org.ewgf.models.BattleType;
+import org.ewgf.support.PostgresContainers;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/*
+ * Writes the same battles through the batch and the COPY path and checks that both persist identical rows.
+ * Also reports the throughput of each mode, which is the comparison ingestion.battle-write-mode is chosen on.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class BattleWriteModeComparisonTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(BattleWriteModeComparisonTest.class);
+
+    private static final int BATTLES = 20_000;
+    private static final int ROUNDS = 3;
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = PostgresContainers.withSchema();
+
+    private static JdbcTemplate jdbcTemplate;
+    private static TransactionTemplate transactionTemplate;
+
+    @BeforeAll
+    static void setUp() {
+        DataSource dataSource = PostgresContainers.dataSource(postgres);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @Test
+    void batchAndCopyPersistIdenticalRows() {
+        List<Battle> battles = generateBattles(BATTLES);
+
+        Set<String> batchInserted = write("batch", battles);
+        List<Map<String, Object>> batchRows = readBattles();
+
+        Set<String> copyInserted = write("copy", battles);
+        List<Map<String, Object>> copyRows = readBattles();
+
+        assertEquals(batchInserted, copyInserted);
+        assertEquals(batchRows, copyRows);
+
+        Map<String, Object> first = copyRows.get(0);
+        Battle expected = battles.stream()
+                .filter(battle -> battle.getBattleId().equals(first.get("battle_id")))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(expected.getPlayer1RatingBefore(), first.get("player1_rating_before"));
+        assertEquals(expected.getPlayer1RegionId(), first.get("player1_region"));
+    }
+
+    @Test
+    void duplicateBattlesAreInsertedOnceInBothModes() {
+        List<Battle> battles = generateBattles(100);
+        List<Battle> withDuplicates = new ArrayList<>(battles);
+        withDuplicates.addAll(battles.subList(0, 10));
+
+        assertEquals(100, write("batch", withDuplicates).size());
+        assertEquals(100, write("copy", withDuplicates).size());
+    }
+
+    @Test
+    void compareThroughput() {
+        List<Battle> battles = generateBattles(BATTLES);
+        for (String mode : List.of("batch", "copy")) {
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                write(mode, battles);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            logger.info("{} write of {} battles: best of {} rounds {} ms, {} rows/sec",
+                    mode, BATTLES, ROUNDS, best / 1_000_000, BATTLES * 1_000_000_000L / Math.max(1, best));
+        }
+    }
+
+    // Every write starts from an empty table, inside one transaction like processBattlesAsync
+    private Set<String> write(String mode, List<Battle> battles) {
+        jdbcTemplate.execute("TRUNCATE public.battles");
+        BattleProcessingService service = new BattleProcessingService(
+                jdbcTemplate,
+                mock(ApplicationEventPublisher.class),
+                mock(AggregatedStatisticsDeltaService.class),
+                mock(PlayerMatchupService.class),
+                mock(PlayerAutocompleteIndex.class),
+                mock(PlayerCharacterSummaryService.class),
+                mock(OnlineCharacterStatsRevalidator.class),
+                mock(RecentlyActivePlayersTracker.class),
+                mode);
+        return transactionTemplate.execute(status -> service.executeBattleBatchWrite(battles));
+    }
+
+    private List<Map<String, Object>> readBattles() {
+        return jdbcTemplate.queryForList("SELECT * FROM public.battles ORDER BY battle_id");
+    }
+
+    private static List<Battle> generateBattles(int count) {
+        Random random = new Random(42);
+        List<Battle> battles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Battle battle = new Battle();
+            battle.setBattleId("battle-" + i);
+            battle.setBattleAt(1_735_689_600L + i);
+            battle.setBattleType(BattleType.values()[random.nextInt(BattleType.values().length)]);
+            battle.setGameVersion(10901);
+            battle.setPlayer1CharacterId(random.nextInt(40));
+            battle.setPlayer1Name(i % 50 == 0 ? "quote \"" + i + "\", comma" : "p1-" + i);
+            battle.setPlayer1RegionId(i % 7 == 0 ? null : random.nextInt(5));
+            battle.setPlayer1Language(i % 11 == 0 ? null : "en");
+            battle.setPlayer1PolarisId("polaris-1-" + i);
+            battle.setPlayer1TekkenPower(random.nextInt(300_000));
+            battle.setPlayer1DanRank(random.nextInt(30));
+            battle.setPlayer1RatingBefore(i % 5 == 0 ? null : 1000 + random.nextInt(2000));
+            battle.setPlayer1RatingChange(i % 5 == 0 ? null : random.nextInt(61) - 30);
+            battle.setPlayer1RoundsWon(random.nextInt(4));
+            battle.setPlayer1UserId(String.format("%018d", random.nextInt(5000)));
+            battle.setPlayer2CharacterId(random.nextInt(40));
+            battle.setPlayer2Name("p2-" + i);
+            battle.setPlayer2RegionId(i % 3 == 0 ? null : random.nextInt(5));
+            battle.setPlayer2Language("ja");
+            battle.setPlayer2PolarisId("polaris-2-" + i);
+            battle.setPlayer2TekkenPower(random.nextInt(300_000));
+            battle.setPlayer2DanRank(random.nextInt(30));
+            battle.setPlayer2RatingBefore(i % 4 == 0 ? null : 1000 + random.nextInt(2000));
+            battle.setPlayer2RatingChange(i % 4 == 0 ? null : random.nextInt(61) - 30);
+            battle.setPlayer2RoundsWon(random.nextInt(4));
+            battle.setPlayer2UserId(String.format("%018d", random.nextInt(5000)));
+            battle.setStageId(random.nextInt(20));
+            battle.setWinner(1 + random.nextInt(2));
+            battles.add(battle);
+        }
+        return battles;
+    }
+}
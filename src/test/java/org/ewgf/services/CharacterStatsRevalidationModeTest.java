@@ -0,0 +1,167 @@
+package org.ewgf.services;
+
+import org.ewgf.configuration.BackpressureManager;
+import org.ewgf.models.Battle;
+import org.ewgf.models.BattleType;
+import org.ewgf.repositories.BattleRepository;
+import org.ewgf.repositories.CharacterStatsRepository;
+import org.ewgf.repositories.PlayerRepository;
+import org.ewgf.support.PostgresContainers;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/*
+ * Revalidates the same battles in the set-based and the per-player mode and checks that both leave the same
+ * wins and losses in character_stats. The per-player mode reads battles with the query of
+ * BattleRepository.findAllBattlesByPlayerId, run as written in its @Query annotation.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class CharacterStatsRevalidationModeTest {
+
+    private static final int GAME_VERSION = 10901;
+    private static final String SELF_PLAYER = "000000000000000001";
+    private static final String OTHER_PLAYER = "000000000000000002";
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = PostgresContainers.withSchema();
+
+    private static DataSource dataSource;
+    private static JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    static void setUp() {
+        dataSource = PostgresContainers.dataSource(postgres);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @BeforeEach
+    void clearTables() {
+        jdbcTemplate.execute("TRUNCATE public.battles, public.character_stats, public.job_checkpoints");
+    }
+
+    @Test
+    void battleAgainstOneselfCountsOnceInBothModes() throws Exception {
+        insertBattles(List.of(
+                battle("self-play", SELF_PLAYER, 1, SELF_PLAYER, 2, 1),
+                battle("regular", SELF_PLAYER, 1, OTHER_PLAYER, 3, 2)));
+
+        runSetBased();
+        List<Map<String, Object>> setBasedRows = readCharacterStats();
+
+        jdbcTemplate.execute("TRUNCATE public.character_stats, public.job_checkpoints");
+        runPerPlayer();
+        List<Map<String, Object>> perPlayerRows = readCharacterStats();
+
+        assertEquals(perPlayerRows, setBasedRows);
+        assertEquals(List.of(
+                Map.of("player_id", SELF_PLAYER, "character_id", "1", "wins", 1, "losses", 1),
+                Map.of("player_id", OTHER_PLAYER, "character_id", "3", "wins", 1, "losses", 0)), setBasedRows);
+    }
+
+    private void runSetBased() {
+        CharacterStatsRepository characterStatsRepository = mock(CharacterStatsRepository.class);
+        when(characterStatsRepository.findAllGameVersions()).thenReturn(Optional.of(List.of(GAME_VERSION)));
+        new SetBasedCharacterStatsRevalidator(
+                jdbcTemplate,
+                characterStatsRepository,
+                mock(PlayerCharacterSummaryService.class),
+                new JobCheckpointStore(jdbcTemplate),
+                new DataSourceTransactionManager(dataSource))
+                .revalidate(true);
+    }
+
+    private void runPerPlayer() throws Exception {
+        PlayerRepository playerRepository = mock(PlayerRepository.class);
+        when(playerRepository.count()).thenReturn(2L);
+        when(playerRepository.findPlayerIdsAfter(eq(""), anyInt())).thenReturn(List.of(SELF_PLAYER, OTHER_PLAYER));
+        when(playerRepository.findPlayerIdsAfter(eq(OTHER_PLAYER), anyInt())).thenReturn(List.of());
+
+        String battlesByPlayerSql = BattleRepository.class
+                .getMethod("findAllBattlesByPlayerId", String.class)
+                .getAnnotation(Query.class)
+                .value();
+        NamedParameterJdbcTemplate namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        BattleRepository battleRepository = mock(BattleRepository.class);
+        when(battleRepository.findAllBattlesByPlayerId(anyString())).thenAnswer(invocation -> Optional.of(
+                namedJdbcTemplate.query(battlesByPlayerSql, Map.of("playerId", invocation.getArgument(0)),
+                        (rs, rowNum) -> battle(rs.getString("battle_id"),
+                                rs.getString("player1_id"), rs.getInt("player1_character_id"),
+                                rs.getString("player2_id"), rs.getInt("player2_character_id"),
+                                rs.getInt("winner")))));
+
+        new CharacterStatsRevalidationService(
+                playerRepository,
+                battleRepository,
+                mock(CharacterStatsRepository.class),
+                mock(BackpressureManager.class),
+                new BatchExecutorService(jdbcTemplate, mock(PlayerCharacterSummaryService.class)),
+                mock(SetBasedCharacterStatsRevalidator.class),
+                mock(OnlineCharacterStatsRevalidator.class),
+                new JobCheckpointStore(jdbcTemplate),
+                mock(ApplicationEventPublisher.class),
+                "per-player")
+                .startRevalidation(true);
+    }
+
+    private void insertBattles(List<Battle> battles) {
+        BattleProcessingService service = new BattleProcessingService(
+                jdbcTemplate,
+                mock(ApplicationEventPublisher.class),
+                mock(AggregatedStatisticsDeltaService.class),
+                mock(PlayerMatchupService.class),
+                mock(PlayerAutocompleteIndex.class),
+                mock(PlayerCharacterSummaryService.class),
+                mock(OnlineCharacterStatsRevalidator.class),
+                mock(RecentlyActivePlayersTracker.class),
+                "batch");
+        new TransactionTemplate(new DataSourceTransactionManager(dataSource))
+                .execute(status -> service.executeBattleBatchWrite(battles));
+    }
+
+    private List<Map<String, Object>> readCharacterStats() {
+        return jdbcTemplate.queryForList(
+                "SELECT player_id, character_id, wins, losses FROM public.character_stats " +
+                "WHERE game_version = ? ORDER BY player_id, character_id", GAME_VERSION);
+    }
+
+    private static Battle battle(String battleId, String player1Id, int player1CharacterId,
+                                 String player2Id, int player2CharacterId, int winner) {
+        Battle battle = new Battle();
+        battle.setBattleId(battleId);
+        battle.setBattleAt(1_735_689_600L);
+        battle.setBattleType(BattleType.values()[0]);
+        battle.setGameVersion(GAME_VERSION);
+        battle.setPlayer1UserId(player1Id);
+        battle.setPlayer1CharacterId(player1CharacterId);
+        battle.setPlayer1Name("p1");
+        battle.setPlayer1DanRank(20);
+        battle.setPlayer2UserId(player2Id);
+        battle.setPlayer2CharacterId(player2CharacterId);
+        battle.setPlayer2Name("p2");
+        battle.setPlayer2DanRank(20);
+        battle.setWinner(winner);
+        return battle;
+    }
+}
@@ -0,0 +1,89 @@
+package org.ewgf.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.ewgf.configuration.RabbitMQConfig;
+import org.ewgf.repositories.BattleRepository;
+import org.ewgf.support.PostgresContainers;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@Testcontainers(disabledWithoutDocker = true)
+class PartitionReconciliationServiceTest {
+
+    private static final long GRACE_SECONDS = 600;
+    private static final long LOOKBACK_SECONDS = 86_400;
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = PostgresContainers.withSchema();
+
+    private static JdbcTemplate jdbcTemplate;
+
+    private BattleRepository battleRepository;
+
+    @BeforeAll
+    static void setUpDatabase() {
+        jdbcTemplate = new JdbcTemplate(PostgresContainers.dataSource(postgres));
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("TRUNCATE battle_player_claims");
+        battleRepository = mock(BattleRepository.class);
+        when(battleRepository.findHalfClaimedBattles(anyLong(), anyLong(), anyInt())).thenReturn(List.of());
+    }
+
+    @Test
+    void claimsOlderThanTheLookbackArePrunedAndClaimsInsideTheWindowSurvive() {
+        long now = Instant.now().getEpochSecond();
+        long windowStart = now - GRACE_SECONDS - LOOKBACK_SECONDS;
+        for (int i = 0; i < 5; i++) {
+            claim("old-" + i, windowStart - 100 - i);
+        }
+        claim("window-start", windowStart + 60);
+        claim("in-window", now - GRACE_SECONDS - 60);
+        claim("in-grace", now);
+
+        // batches of two, so the five old claims take three deletes
+        service(2, 10).reconcileHalfAppliedBattles();
+
+        assertEquals(List.of("in-grace", "in-window", "window-start"),
+                jdbcTemplate.queryForList("SELECT battle_id FROM battle_player_claims ORDER BY battle_id", String.class));
+    }
+
+    @Test
+    void pruningStopsAfterMaxBatchesPerRun() {
+        long old = Instant.now().getEpochSecond() - GRACE_SECONDS - LOOKBACK_SECONDS - 100;
+        for (int i = 0; i < 5; i++) {
+            claim("old-" + i, old);
+        }
+
+        PartitionReconciliationService service = service(2, 1);
+        assertEquals(2, service.pruneClaimsBefore(old + 1));
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT count(*) FROM battle_player_claims", Integer.class));
+    }
+
+    private PartitionReconciliationService service(int pruneBatchSize, int maxPruneBatches) {
+        return new PartitionReconciliationService(battleRepository, new BattlePartitionRouter(true, 4),
+                mock(RabbitTemplate.class), mock(RabbitMQConfig.class), jdbcTemplate, new SimpleMeterRegistry(),
+                GRACE_SECONDS, LOOKBACK_SECONDS, 5000, pruneBatchSize, maxPruneBatches);
+    }
+
+    private static void claim(String battleId, long claimedAt) {
+        jdbcTemplate.update("INSERT INTO battle_player_claims (battle_id, player_id, claimed_at) VALUES (?, ?, ?)",
+                battleId, "000000000000000001", claimedAt);
+    }
+}
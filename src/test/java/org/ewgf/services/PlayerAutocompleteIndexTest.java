@@ -0,0 +1,116 @@
+package org.ewgf.services;
+
+import org.ewgf.dtos.AutocompleteSuggestionDTO;
+import org.ewgf.models.Player;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class PlayerAutocompleteIndexTest {
+
+    private PlayerAutocompleteIndex index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        // an empty players table, everything below is added through ingest upserts
+        ResultSet resultSet = mock(ResultSet.class);
+        Statement statement = mock(Statement.class);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        Connection connection = mock(Connection.class);
+        when(connection.createStatement()).thenReturn(statement);
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+
+        index = new PlayerAutocompleteIndex(true, 100, new JdbcTemplate(dataSource), mock(PlatformTransactionManager.class));
+        index.buildFromDatabase();
+    }
+
+    @Test
+    void everyPlayerSharingANameIsFoundAfterCompaction() {
+        List<Player> players = new ArrayList<>();
+        players.add(player(1, "Jin", 100));
+        for (int i = 2; i <= 9; i++) players.add(player(i, "Kaz", 100));
+        players.add(player(10, "Lee", 100));
+        players.add(player(11, "Kazumi", 100));
+        index.onPlayersUpserted(players);
+
+        assertEquals(9, index.suggest("kaz", 20).size());
+        index.compactIfNeeded();
+
+        List<AutocompleteSuggestionDTO> suggestions = index.suggest("kaz", 20);
+        assertEquals(9, suggestions.size());
+        assertEquals("Kazumi", suggestions.get(suggestions.size() - 1).getName());
+        assertEquals(8, index.suggest("Kaz", 8).size());
+    }
+
+    @Test
+    void shortestMatchIsRankedFirstEvenWhenItSortsAfterHundredsOfKeys() {
+        List<Player> players = new ArrayList<>();
+        for (int i = 1; i <= 250; i++) players.add(player(i, String.format("Kaza%03d", i), 100));
+        players.add(player(251, "Kazz", 100));
+        index.onPlayersUpserted(players);
+        index.compactIfNeeded();
+
+        assertEquals("Kazz", index.suggest("kaz", 5).get(0).getName());
+
+        // not compacted yet, and it also sorts after every snapshot key
+        index.onPlayersUpserted(List.of(player(252, "Kazy", 100)));
+        List<AutocompleteSuggestionDTO> suggestions = index.suggest("kaz", 3);
+        assertEquals(List.of("Kazy", "Kazz", "Kaza001"),
+                suggestions.stream().map(AutocompleteSuggestionDTO::getName).toList());
+    }
+
+    @Test
+    void renamedPlayerIsOnlyFoundUnderTheNewName() {
+        index.onPlayersUpserted(List.of(player(1, "Heihachi", 100)));
+        index.compactIfNeeded();
+
+        index.onPlayersUpserted(List.of(player(1, "Reina", 200)));
+        assertTrue(index.suggest("hei", 10).isEmpty());
+        assertEquals("Reina", index.suggest("rei", 10).get(0).getName());
+
+        index.compactIfNeeded();
+        assertTrue(index.suggest("hei", 10).isEmpty());
+        assertEquals("Reina", index.suggest("rei", 10).get(0).getName());
+    }
+
+    @Test
+    void olderUpsertDoesNotReplaceTheName() {
+        index.onPlayersUpserted(List.of(player(1, "Reina", 200)));
+        index.onPlayersUpserted(List.of(player(1, "Heihachi", 100)));
+        index.compactIfNeeded();
+
+        assertTrue(index.suggest("hei", 10).isEmpty());
+        assertEquals(1, index.suggest("rei", 10).size());
+    }
+
+    @Test
+    void polarisIdMatchesIgnoreDashes() {
+        index.onPlayersUpserted(List.of(player(1, "Jin", 100)));
+        index.compactIfNeeded();
+
+        assertEquals("Jin", index.suggest("3abc-d", 10).get(0).getName());
+    }
+
+    private static Player player(int id, String name, long latestBattle) {
+        Player player = new Player();
+        player.setPlayerId(String.format("%018d", id));
+        player.setName(name);
+        player.setPolarisId("3ABCD" + String.format("%07d", id));
+        player.setRegionId(1);
+        player.setLatestBattle(latestBattle);
+        return player;
+    }
+}
@@ -0,0 +1,74 @@
+package org.ewgf.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.ewgf.dtos.PlayerDTO;
+import org.ewgf.events.CharacterStatsRevalidatedEvent;
+import org.ewgf.events.PlayersUpdatedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlayerProfileCacheTest {
+
+    private static final long ONE_HOUR = 3_600_000;
+
+    @Test
+    void ingestDropsOnlyTheUpdatedPlayers() {
+        PlayerProfileCache cache = cache(ONE_HOUR);
+        cache.put("1", profile("A"), cache.currentGeneration());
+        cache.put("2", profile("B"), cache.currentGeneration());
+
+        cache.onPlayersUpdated(new PlayersUpdatedEvent(Set.of("1")));
+
+        assertTrue(cache.get("A").isEmpty());
+        assertTrue(cache.get("B").isPresent());
+    }
+
+    @Test
+    void revalidationClearsEveryProfile() {
+        PlayerProfileCache cache = cache(ONE_HOUR);
+        cache.put("1", profile("A"), cache.currentGeneration());
+        cache.put("2", profile("B"), cache.currentGeneration());
+
+        for (String mode : new String[]{"per-player", "set-based", "online"}) {
+            cache.onCharacterStatsRevalidated(new CharacterStatsRevalidatedEvent(mode));
+            assertTrue(cache.get("A").isEmpty(), mode);
+            assertTrue(cache.get("B").isEmpty(), mode);
+            cache.put("1", profile("A"), cache.currentGeneration());
+        }
+    }
+
+    @Test
+    void profileLoadedBeforeARevalidationIsNotCached() {
+        PlayerProfileCache cache = cache(ONE_HOUR);
+        long generation = cache.currentGeneration();
+
+        cache.onCharacterStatsRevalidated(new CharacterStatsRevalidatedEvent("set-based"));
+        cache.put("1", profile("A"), generation);
+
+        assertTrue(cache.get("A").isEmpty());
+    }
+
+    @Test
+    void entriesExpireAfterTheTtl() throws InterruptedException {
+        PlayerProfileCache cache = cache(20);
+        cache.put("1", profile("A"), cache.currentGeneration());
+        assertTrue(cache.get("A").isPresent());
+
+        Thread.sleep(50);
+
+        assertTrue(cache.get("A").isEmpty());
+    }
+
+    private static PlayerProfileCache cache(long ttlMs) {
+        return new PlayerProfileCache(true, 1 << 20, ttlMs, new SimpleMeterRegistry());
+    }
+
+    private static PlayerDTO profile(String polarisId) {
+        PlayerDTO profile = new PlayerDTO();
+        profile.setPolarisId(polarisId);
+        return profile;
+    }
+}
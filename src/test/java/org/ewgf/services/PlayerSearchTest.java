@@ -0,0 +1,76 @@
+package org.ewgf.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.ewgf.dtos.PlayerSearchDTO;
+import org.ewgf.interfaces.PlayerSummaryProjection;
+import org.ewgf.repositories.BattleRepository;
+import org.ewgf.repositories.PlayerRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class PlayerSearchTest {
+
+    private PlayerRepository playerRepository;
+    private PlayerService playerService;
+
+    @BeforeEach
+    void setUp() {
+        playerRepository = mock(PlayerRepository.class);
+        playerService = new PlayerService(playerRepository, mock(BattleRepository.class), mock(PlayerMatchupService.class),
+                mock(PlayerProfileCache.class), mock(PlayerAutocompleteIndex.class),
+                mock(RecentlyActivePlayersTracker.class), new SimpleMeterRegistry(), 50);
+    }
+
+    @Test
+    void shortQueryWithAFullPageOfPrefixesSkipsTheSubstringSearch() {
+        List<PlayerSummaryProjection> prefixMatches = players("ab", 20);
+        when(playerRepository.searchByNamePrefix("ab", "ab", 20)).thenReturn(Optional.of(prefixMatches));
+
+        List<PlayerSearchDTO> results = playerService.searchPlayers("AB");
+
+        assertEquals(20, results.size());
+        verify(playerRepository, never()).searchByNameOrPolarisId(anyString(), anyString(), anyInt());
+    }
+
+    @Test
+    void shortQueryFallsBackToSubstringMatchesWhenPrefixesRunOut() {
+        List<PlayerSummaryProjection> prefixMatches = players("ab", 3);
+        List<PlayerSummaryProjection> substringMatches = players("xab", 5);
+        when(playerRepository.searchByNamePrefix("ab", "ab", 20)).thenReturn(Optional.of(prefixMatches));
+        when(playerRepository.searchByNameOrPolarisId("ab", "ab", 20)).thenReturn(Optional.of(substringMatches));
+
+        List<PlayerSearchDTO> results = playerService.searchPlayers("ab");
+
+        assertEquals(5, results.size());
+        assertEquals("xab0", results.get(0).getName());
+    }
+
+    @Test
+    void longQueryGoesStraightToTheSubstringSearch() {
+        List<PlayerSummaryProjection> substringMatches = players("abc", 1);
+        when(playerRepository.searchByNameOrPolarisId("abc", "abc", 20)).thenReturn(Optional.of(substringMatches));
+
+        assertEquals(1, playerService.searchPlayers("abc").size());
+        verify(playerRepository, never()).searchByNamePrefix(anyString(), anyString(), anyInt());
+    }
+
+    private static List<PlayerSummaryProjection> players(String namePrefix, int count) {
+        List<PlayerSummaryProjection> players = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            PlayerSummaryProjection player = mock(PlayerSummaryProjection.class);
+            when(player.getPlayerId()).thenReturn(String.valueOf(i));
+            when(player.getName()).thenReturn(namePrefix + i);
+            players.add(player);
+        }
+        return players;
+    }
+}
@@ -0,0 +1,81 @@
+package org.ewgf.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.ewgf.models.Battle;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecentlySentBattleFilterTest {
+
+    private static final long ONE_HOUR = 3_600_000;
+
+    @Test
+    void sentBattlesAreSuppressedAndUnsentOnesPass() {
+        RecentlySentBattleFilter filter = filter(true, ONE_HOUR, 1000);
+        filter.markSent(battles(0, 10));
+
+        List<Battle> unsent = filter.filterUnsent(battles(5, 15));
+
+        assertEquals(battles(10, 15).stream().map(Battle::getBattleId).toList(),
+                unsent.stream().map(Battle::getBattleId).toList());
+    }
+
+    @Test
+    void repeatsInsideOneFetchAreDropped() {
+        RecentlySentBattleFilter filter = filter(true, ONE_HOUR, 1000);
+        List<Battle> fetched = new ArrayList<>(battles(0, 3));
+        fetched.addAll(battles(0, 3));
+
+        assertEquals(3, filter.filterUnsent(fetched).size());
+    }
+
+    @Test
+    void idsSurviveOneHorizonRotation() throws InterruptedException {
+        RecentlySentBattleFilter filter = filter(true, 100, 1000);
+        filter.markSent(battles(0, 10));
+
+        Thread.sleep(150);
+        // current rotates into previous, the ids are still known
+        assertTrue(filter.filterUnsent(battles(0, 10)).isEmpty());
+
+        Thread.sleep(150);
+        // a second rotation drops them
+        assertEquals(10, filter.filterUnsent(battles(0, 10)).size());
+    }
+
+    @Test
+    void sizeRotationKeepsTheLastFullGeneration() {
+        RecentlySentBattleFilter filter = filter(true, ONE_HOUR, 10);
+        filter.markSent(battles(0, 10));   // full: rotates into previous
+        filter.markSent(battles(10, 20));  // full again: battles 0-9 are dropped before their horizon
+
+        assertTrue(filter.filterUnsent(battles(10, 20)).isEmpty());
+        assertEquals(10, filter.filterUnsent(battles(0, 10)).size());
+    }
+
+    @Test
+    void disabledFilterPassesEverything() {
+        RecentlySentBattleFilter filter = filter(false, ONE_HOUR, 10);
+        filter.markSent(battles(0, 5));
+
+        assertEquals(5, filter.filterUnsent(battles(0, 5)).size());
+    }
+
+    private static RecentlySentBattleFilter filter(boolean enabled, long horizonMillis, int maxIds) {
+        return new RecentlySentBattleFilter(enabled, horizonMillis, maxIds, new SimpleMeterRegistry(), "test");
+    }
+
+    private static List<Battle> battles(int from, int to) {
+        List<Battle> battles = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            Battle battle = new Battle();
+            battle.setBattleId("battle-" + i);
+            battles.add(battle);
+        }
+        return battles;
+    }
+}
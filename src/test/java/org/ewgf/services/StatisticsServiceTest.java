@@ -0,0 +1,74 @@
+package org.ewgf.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.ewgf.dtos.PreparedResponse;
+import org.ewgf.dtos.StatisticsSnapshot;
+import org.ewgf.events.StatisticsComputedEvent;
+import org.ewgf.repositories.AggregatedStatisticsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class StatisticsServiceTest {
+
+    private AggregatedStatisticsRepository repository;
+    private StatisticsService statisticsService;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(AggregatedStatisticsRepository.class);
+        when(repository.getGameVersions()).thenReturn(Optional.of(List.of(10901)));
+        statisticsService = new StatisticsService(repository, new ObjectMapper(), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void failingSectionOnColdStartLeavesTheOthersServedAndIsRetried() {
+        when(repository.findAllWinrateStats()).thenThrow(new IllegalStateException("query failed"));
+
+        StatisticsSnapshot snapshot = statisticsService.getSnapshot();
+
+        assertTrue(snapshot.getResponse(StatisticsSnapshot.VERSION_WINRATES).isEmpty());
+        assertTrue(snapshot.getResponse(StatisticsSnapshot.VERSION_POPULARITY).isPresent());
+        assertTrue(snapshot.getResponse(StatisticsSnapshot.GAME_VERSIONS).isPresent());
+        assertFalse(snapshot.isComplete());
+
+        // not kept, so the next request builds again
+        statisticsService.getSnapshot();
+        verify(repository, times(2)).findAllWinrateStats();
+    }
+
+    @Test
+    void failingSectionKeepsItsPreviousBody() {
+        statisticsService.onStatisticsComputed(new StatisticsComputedEvent(1L));
+        PreparedResponse previousTopPopularity =
+                statisticsService.getSnapshot().getResponse(StatisticsSnapshot.TOP_POPULARITY).orElseThrow();
+
+        when(repository.findTopCharactersByPopularity()).thenThrow(new IllegalStateException("query failed"));
+        statisticsService.onStatisticsComputed(new StatisticsComputedEvent(2L));
+
+        StatisticsSnapshot snapshot = statisticsService.getSnapshot();
+        assertSame(previousTopPopularity, snapshot.getResponse(StatisticsSnapshot.TOP_POPULARITY).orElseThrow());
+        assertEquals(1L, snapshot.getResponse(StatisticsSnapshot.TOP_POPULARITY).orElseThrow().getVersion());
+        assertEquals(2L, snapshot.getResponse(StatisticsSnapshot.TOP_WINRATES).orElseThrow().getVersion());
+        assertNotNull(snapshot.getTopPopularity());
+        assertTrue(snapshot.isComplete());
+    }
+
+    @Test
+    void snapshotMapsAreReadOnly() {
+        StatisticsSnapshot snapshot = statisticsService.getSnapshot();
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getVersionWinrates().clear());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getRankDistributions().clear());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getAllWinrateChanges().put("x", List.of()));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getResponses().clear());
+        Map<String, ?> popularity = snapshot.getVersionPopularity();
+        assertThrows(UnsupportedOperationException.class, popularity::clear);
+    }
+}
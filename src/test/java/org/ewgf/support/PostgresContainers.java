@@ -0,0 +1,25 @@
+package org.ewgf.support;
+
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.MountableFile;
+
+import javax.sql.DataSource;
+
+/*
+ * PostgreSQL 17 with the schema from init.sql, the same setup compose.yml gives the dev profile.
+ * Test classes using it are annotated @Testcontainers(disabledWithoutDocker = true).
+ */
+public final class PostgresContainers {
+
+    private PostgresContainers() {}
+
+    public static PostgreSQLContainer<?> withSchema() {
+        return new PostgreSQLContainer<>("postgres:17")
+                .withCopyFileToContainer(MountableFile.forHostPath("init.sql"), "/docker-entrypoint-initdb.d/init.sql");
+    }
+
+    public static DataSource dataSource(PostgreSQLContainer<?> postgres) {
+        return new DriverManagerDataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    }
+}
@@ -0,0 +1,69 @@
+package org.ewgf.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+    @Test
+    void permitsAreSpacedAtTheRateAcrossThreads() throws Exception {
+        RateLimiter rateLimiter = new RateLimiter(100);
+        int threads = 5;
+        int permitsPerThread = 10;
+        List<Long> grantedAt = Collections.synchronizedList(new ArrayList<>());
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(executor.submit(() -> {
+                for (int i = 0; i < permitsPerThread; i++) {
+                    rateLimiter.acquire();
+                    grantedAt.add(System.nanoTime());
+                }
+                return null;
+            }));
+        }
+        for (Future<?> worker : workers) worker.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        // 50 permits at 100/s: the first is immediate, the last one 49 intervals later
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis >= 480, "finished too early: " + elapsedMillis + " ms");
+        assertTrue(elapsedMillis < 2000, "finished too late: " + elapsedMillis + " ms");
+
+        // any 11 consecutive permits span at least 10 intervals, whichever threads took them
+        List<Long> sorted = new ArrayList<>(grantedAt);
+        Collections.sort(sorted);
+        for (int i = 10; i < sorted.size(); i++) {
+            assertTrue(sorted.get(i) - sorted.get(i - 10) >= TimeUnit.MILLISECONDS.toNanos(95),
+                    "10 permits within " + TimeUnit.NANOSECONDS.toMillis(sorted.get(i) - sorted.get(i - 10)) + " ms");
+        }
+    }
+
+    @Test
+    void idleTimeIsNotBankedAsABurst() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(20);
+        rateLimiter.acquire();
+        Thread.sleep(300);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) rateLimiter.acquire();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // the first one is free after the pause, the next two wait a full 50 ms interval each
+        assertTrue(elapsedMillis >= 95, "burst of " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void rateMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(0));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(-1));
+    }
+}
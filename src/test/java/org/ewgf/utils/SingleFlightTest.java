@@ -0,0 +1,104 @@
+package org.ewgf.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallersShareOneLoad() throws Exception {
+        SingleFlight<String, Integer> singleFlight = singleFlight(Duration.ofSeconds(5));
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        Future<Integer> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+            loads.incrementAndGet();
+            release.await();
+            return 42;
+        }));
+        awaitInFlight(loads);
+        Future<Integer> waiter = executor.submit(() -> singleFlight.execute("key", () -> {
+            loads.incrementAndGet();
+            return -1;
+        }));
+
+        awaitDeduplicated(1);
+        release.countDown();
+        assertEquals(42, leader.get(5, TimeUnit.SECONDS));
+        assertEquals(42, waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void errorInTheLoaderReachesTheWaiters() throws Exception {
+        SingleFlight<String, Integer> singleFlight = singleFlight(Duration.ofSeconds(30));
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        Future<Integer> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+            loads.incrementAndGet();
+            release.await();
+            throw new OutOfMemoryError("simulated");
+        }));
+        awaitInFlight(loads);
+        Future<Integer> waiter = executor.submit(() -> singleFlight.execute("key", () -> 1));
+
+        awaitDeduplicated(1);
+        release.countDown();
+        ExecutionException leaderFailure = assertThrows(ExecutionException.class, () -> leader.get(5, TimeUnit.SECONDS));
+        ExecutionException waiterFailure = assertThrows(ExecutionException.class, () -> waiter.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(OutOfMemoryError.class, leaderFailure.getCause());
+        assertInstanceOf(OutOfMemoryError.class, waiterFailure.getCause());
+
+        // the key is free again
+        assertEquals(7, singleFlight.execute("key", () -> 7));
+    }
+
+    @Test
+    void waitersGiveUpAfterMaxWait() throws Exception {
+        SingleFlight<String, Integer> singleFlight = singleFlight(Duration.ofMillis(50));
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        Future<Integer> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+            loads.incrementAndGet();
+            release.await();
+            return 42;
+        }));
+        awaitInFlight(loads);
+
+        assertThrows(TimeoutException.class, () -> singleFlight.execute("key", () -> -1));
+        release.countDown();
+        assertEquals(42, leader.get(5, TimeUnit.SECONDS));
+    }
+
+    private SingleFlight<String, Integer> singleFlight(Duration maxWait) {
+        return new SingleFlight<>("test", maxWait, meterRegistry);
+    }
+
+    private static void awaitInFlight(AtomicInteger loads) throws InterruptedException {
+        while (loads.get() == 0) Thread.sleep(1);
+    }
+
+    // A deduplicated caller has joined the in-flight load, so releasing the leader cannot make it load again
+    private void awaitDeduplicated(int waiters) throws InterruptedException {
+        Counter deduplicated = meterRegistry.get("ewgf.singleflight.requests").tag("result", "deduplicated").counter();
+        while (deduplicated.count() < waiters) Thread.sleep(1);
+    }
+}